@@ -0,0 +1,29 @@
+package org.metaborg.mbt.core.run;
+
+/**
+ * A cancellation token that is cancelled by calling {@link #cancel()}.
+ */
+public class CancellationToken implements ICancellationToken {
+    /**
+     * A token that is never cancelled.
+     */
+    public static final ICancellationToken NEVER = new ICancellationToken() {
+        @Override public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private volatile boolean cancelled = false;
+
+
+    /**
+     * Cancel the test runs that use this token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,303 @@
+package org.metaborg.mbt.core.run;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.context.ContextException;
+import org.metaborg.core.context.IContext;
+import org.metaborg.core.context.IContextService;
+import org.metaborg.core.context.ITemporaryContext;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.ILanguageService;
+import org.metaborg.core.language.LanguageImplChange;
+import org.metaborg.core.project.IProject;
+import org.metaborg.util.concurrent.IClosableLock;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+import rx.functions.Action1;
+
+/**
+ * A pool of temporary analysis contexts, for the tests of a test suite and a language.
+ * 
+ * Whether contexts are reused between tests depends on the {@link ContextSharingPolicy}. Contexts should be obtained
+ * with {@link #get(FileObject, IProject, ILanguageImpl)} and given back with
+ * {@link #release(IProject, ILanguageImpl, IContext)} when the test is done with them. Contexts are only reused for
+ * tests of the same test suite. A context that is shared between tests is write locked from the moment it is obtained
+ * until it is given back, so tests that run in parallel take turns using it.
+ * 
+ * Regardless of the policy, {@link #shared(IProject, ILanguageImpl)} gives a single context per project
+ * and language, which can be used to query things that only depend on the language of a context, like the
+ * {@link ITestExpectationEvaluator#getPhase(IContext, org.metaborg.mbt.core.model.expectations.ITestExpectation)} of
+ * an expectation. This way, no context has to be created for tests that only need to parse their fragment.
+ * 
+ * The contexts of a test suite should be closed with {@link #clear(FileObject)} when its tests are done. The contexts
+ * of a language are closed when the language is reloaded or removed.
+ */
+public class ContextPool {
+
+    private static final ILogger logger = LoggerUtils.logger(ContextPool.class);
+
+    private final IContextService contextService;
+
+    // contexts to query the language with, per project and language
+    private final ConcurrentMap<ContextKey, ITemporaryContext> shared = Maps.newConcurrentMap();
+    // contexts that are shared by the tests of a test suite, with the SHARED policy
+    private final ConcurrentMap<ContextKey, ITemporaryContext> suiteShared = Maps.newConcurrentMap();
+    private final ConcurrentMap<ContextKey, BlockingQueue<ITemporaryContext>> idle = Maps.newConcurrentMap();
+    // the key of each context that is handed out and not shared, compared by identity
+    private final ConcurrentMap<IContext, ContextKey> borrowed = new MapMaker().weakKeys().makeMap();
+    // the write locks that the calling thread holds on shared contexts, the last one on top
+    private final ThreadLocal<Deque<HeldLock>> locks = new ThreadLocal<Deque<HeldLock>>() {
+        @Override protected Deque<HeldLock> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+    private volatile ContextSharingPolicy policy = ContextSharingPolicy.RESET;
+    private volatile int maxIdle = 4;
+
+    @Inject public ContextPool(IContextService contextService, ILanguageService languageService) {
+        this.contextService = contextService;
+        languageService.implChanges().subscribe(new Action1<LanguageImplChange>() {
+            @Override public void call(LanguageImplChange change) {
+                if(change.kind == LanguageImplChange.Kind.Reload || change.kind == LanguageImplChange.Kind.Remove) {
+                    clear(change.impl);
+                }
+            }
+        });
+    }
+
+    /**
+     * Set the sharing policy for contexts handed out after this call.
+     */
+    public void setPolicy(ContextSharingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Set the maximum number of idle contexts that are kept for each test suite and language, when using
+     * {@link ContextSharingPolicy#RESET}.
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = Math.max(0, maxIdle);
+    }
+
+    /**
+     * Get a context to analyze a test fragment.
+     * 
+     * A shared context is write locked by the calling thread until it is given back, so it has to be given back on the
+     * same thread.
+     * 
+     * @param resource
+     *            the resource of the test suite.
+     * @param project
+     *            the project of the test suite.
+     * @param language
+     *            the language of the context.
+     * @return the context. It should be given back with {@link #release(IProject, ILanguageImpl, IContext)}.
+     */
+    public IContext get(@Nullable FileObject resource, IProject project, ILanguageImpl language)
+        throws ContextException {
+        final ContextKey key = new ContextKey(resource, project, language);
+        final ITemporaryContext context;
+        switch(policy) {
+            case SHARED:
+                while(true) {
+                    context = getOrCreate(suiteShared, key);
+                    final IClosableLock lock = context.write();
+                    if(suiteShared.get(key) == context) {
+                        locks.get().push(new HeldLock(context, lock));
+                        return context;
+                    }
+                    // the test suite was cleared while waiting for the lock, so the context was closed
+                    lock.close();
+                }
+            case RESET:
+                final BlockingQueue<ITemporaryContext> contexts = idle.get(key);
+                final ITemporaryContext idleContext = contexts == null ? null : contexts.poll();
+                context = idleContext != null ? idleContext : contextService.getTemporary(resource, project, language);
+                break;
+            case NEVER:
+            default:
+                context = contextService.getTemporary(resource, project, language);
+                break;
+        }
+        borrowed.put(context, key);
+        return context;
+    }
+
+    /**
+     * Give back a context that was obtained through {@link #get(FileObject, IProject, ILanguageImpl)}.
+     * 
+     * The context should no longer be used afterwards.
+     */
+    public void release(IProject project, ILanguageImpl language, IContext context) {
+        final Deque<HeldLock> held = locks.get();
+        if(!held.isEmpty() && held.peek().context == context) {
+            // a shared context, which stays in the pool until it is cleared
+            held.pop().lock.close();
+            return;
+        }
+        final ContextKey key = borrowed.remove(context);
+        final ITemporaryContext tempContext = (ITemporaryContext) context;
+        final int max = maxIdle;
+        if(key == null || policy != ContextSharingPolicy.RESET || max == 0) {
+            tempContext.close();
+            return;
+        }
+
+        try {
+            tempContext.reset();
+        } catch(IOException e) {
+            logger.warn("Unable to reset context {}, closing it instead", e, tempContext);
+            tempContext.close();
+            return;
+        }
+        BlockingQueue<ITemporaryContext> contexts = idle.get(key);
+        if(contexts == null) {
+            final BlockingQueue<ITemporaryContext> newContexts = new ArrayBlockingQueue<>(max);
+            contexts = idle.putIfAbsent(key, newContexts);
+            if(contexts == null) {
+                contexts = newContexts;
+            }
+        }
+        if(!contexts.offer(tempContext)) {
+            // the pool is full
+            tempContext.close();
+        }
+    }
+
+    /**
+     * Get the context that is shared by all tests of the given project and language, to query the language with.
+     * 
+     * This context should not be given back, and should not be used to analyze anything.
+     */
+    public IContext shared(IProject project, ILanguageImpl language) throws ContextException {
+        return getOrCreate(shared, new ContextKey(null, project, language));
+    }
+
+    private ITemporaryContext getOrCreate(ConcurrentMap<ContextKey, ITemporaryContext> contexts, ContextKey key)
+        throws ContextException {
+        ITemporaryContext context = contexts.get(key);
+        if(context == null) {
+            final ITemporaryContext newContext = contextService.getTemporary(key.resource, key.project, key.language);
+            context = contexts.putIfAbsent(key, newContext);
+            if(context == null) {
+                context = newContext;
+            } else {
+                newContext.close();
+            }
+        }
+        return context;
+    }
+
+    /**
+     * Close all idle contexts in the pool, and the shared ones.
+     */
+    public void clear() {
+        clear(null);
+    }
+
+    /**
+     * Close the idle contexts of the given test suite, and the context that its tests shared.
+     * 
+     * Should be called when the tests of the test suite are done, as its contexts are otherwise kept until the language
+     * is reloaded.
+     */
+    public void clear(final FileObject testSuite) {
+        clear(new Predicate<ContextKey>() {
+            @Override public boolean apply(ContextKey key) {
+                return key.resource != null && testSuite.getName().equals(key.resource.getName());
+            }
+        });
+    }
+
+    /**
+     * Close the idle and shared contexts of the given language, or of all languages if null.
+     */
+    private void clear(final @Nullable ILanguageImpl language) {
+        clear(new Predicate<ContextKey>() {
+            @Override public boolean apply(ContextKey key) {
+                return language == null || language.equals(key.language);
+            }
+        });
+    }
+
+    private void clear(Predicate<ContextKey> keys) {
+        for(ConcurrentMap<ContextKey, ITemporaryContext> contexts : Arrays.asList(shared, suiteShared)) {
+            final Iterator<Map.Entry<ContextKey, ITemporaryContext>> it = contexts.entrySet().iterator();
+            while(it.hasNext()) {
+                final Map.Entry<ContextKey, ITemporaryContext> entry = it.next();
+                if(keys.apply(entry.getKey())) {
+                    it.remove();
+                    // wait for the test that is using it
+                    entry.getValue().write().close();
+                    entry.getValue().close();
+                }
+            }
+        }
+        final Iterator<Map.Entry<ContextKey, BlockingQueue<ITemporaryContext>>> it = idle.entrySet().iterator();
+        while(it.hasNext()) {
+            final Map.Entry<ContextKey, BlockingQueue<ITemporaryContext>> entry = it.next();
+            if(keys.apply(entry.getKey())) {
+                it.remove();
+                ITemporaryContext context;
+                while((context = entry.getValue().poll()) != null) {
+                    context.close();
+                }
+            }
+        }
+    }
+
+
+    private static class HeldLock {
+        private final IContext context;
+        private final IClosableLock lock;
+
+        public HeldLock(IContext context, IClosableLock lock) {
+            this.context = context;
+            this.lock = lock;
+        }
+    }
+
+    private static class ContextKey {
+        private final @Nullable FileObject resource;
+        private final IProject project;
+        private final ILanguageImpl language;
+
+        public ContextKey(@Nullable FileObject resource, IProject project, ILanguageImpl language) {
+            this.resource = resource;
+            this.project = project;
+            this.language = language;
+        }
+
+        @Override public boolean equals(Object obj) {
+            if(!(obj instanceof ContextKey)) {
+                return false;
+            }
+            final ContextKey other = (ContextKey) obj;
+            return Objects.equal(resource, other.resource) && Objects.equal(project, other.project)
+                && language.equals(other.language);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hashCode(resource, project, language);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.metaborg.mbt.core.run;
+
+/**
+ * Determines if and how the {@link ContextPool} hands out the same analysis context to multiple tests.
+ */
+public enum ContextSharingPolicy {
+    /**
+     * Every test gets a new temporary context, which is closed when the test is done.
+     */
+    NEVER,
+
+    /**
+     * Contexts are reset when a test is done, and handed out again to a later test for the same project and language.
+     */
+    RESET,
+
+    /**
+     * All tests for the same project and language share a single context, which is never reset.
+     * 
+     * This is the fastest option, but the analysis of a test may see the results of analyzing earlier tests.
+     */
+    SHARED
+}
@@ -0,0 +1,14 @@
+package org.metaborg.mbt.core.run;
+
+/**
+ * Tells a test run whether it should stop early, for example because its results are no longer needed.
+ *
+ * Test runners check the token between tests and between the expectations of a test. Expectation evaluators may check
+ * it between expensive steps, see {@link ITestExpectationInput#getCancellationToken()}.
+ */
+public interface ICancellationToken {
+    /**
+     * @return true if the test run should stop as soon as possible.
+     */
+    public boolean isCancelled();
+}
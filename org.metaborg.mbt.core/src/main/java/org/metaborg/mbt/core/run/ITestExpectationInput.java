@@ -36,4 +36,10 @@ public interface ITestExpectationInput<P extends IParseUnit, A extends IAnalyzeU
      */
     public IFragmentParserConfig getFragmentParserConfig();
 
+    /**
+     * The token that tells whether the test run was cancelled. Evaluators that do a lot of work should check it
+     * between steps, and stop if it is cancelled.
+     */
+    public ICancellationToken getCancellationToken();
+
 }
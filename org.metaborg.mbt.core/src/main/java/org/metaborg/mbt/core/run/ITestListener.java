@@ -0,0 +1,29 @@
+package org.metaborg.mbt.core.run;
+
+import org.metaborg.core.analysis.IAnalyzeUnit;
+import org.metaborg.core.syntax.IParseUnit;
+import org.metaborg.mbt.core.model.ITestCase;
+
+/**
+ * Receives the results of tests as soon as they are available, so that they can be processed without keeping the
+ * results of all tests around.
+ *
+ * Passed to the streaming {@code runAll} method of {@link TestCaseRunner}.
+ */
+public interface ITestListener<P extends IParseUnit, A extends IAnalyzeUnit> {
+    /**
+     * Called right before the given test is run.
+     * 
+     * When the tests are run on an executor, this is called right before the result of the test is passed to
+     * {@link #testFinished}, as the tests may run at the same time. Always called on the thread that called
+     * {@code runAll}, in the order of the given tests.
+     */
+    public void testStarted(ITestCase test);
+
+    /**
+     * Called with the result of a test.
+     * 
+     * Always called on the thread that called {@code runAll}, in the order of the given tests.
+     */
+    public void testFinished(ITestResult<P, A> result);
+}
@@ -1,5 +1,7 @@
 package org.metaborg.mbt.core.run;
 
+import java.util.List;
+
 import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.core.syntax.IParseUnit;
@@ -44,4 +46,29 @@ public interface ITestResult<P extends IParseUnit, A extends IAnalyzeUnit> {
      * The results of evaluating the expectations of this test.
      */
     public Iterable<? extends ITestExpectationOutput<P, A>> getExpectationResults();
+
+    /**
+     * The resources spent on each phase of running this test, in the order in which the phases ran.
+     * 
+     * The phases are parsing and analyzing the input fragment, obtaining an analysis context, and evaluating each
+     * expectation.
+     */
+    public List<PhaseTiming> getTimings();
+
+    /**
+     * The wall clock time in nanoseconds from the start of the test until its result was available.
+     * 
+     * Unlike the sum of the {@link #getTimings()}, this includes the time in between phases, and the time until the
+     * test timed out.
+     * 
+     * @return the time, or -1 if the test was not run, for example because its result was reused from an earlier run.
+     */
+    public long getWallTime();
+
+    /**
+     * True if the test did not finish within the timeouts of the {@link TestWatchdog}.
+     * 
+     * Such a test failed without evaluating its expectations, so its result should not be reused.
+     */
+    public boolean isTimedOut();
 }
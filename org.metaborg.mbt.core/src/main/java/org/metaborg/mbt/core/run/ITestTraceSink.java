@@ -0,0 +1,31 @@
+package org.metaborg.mbt.core.run;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+
+/**
+ * Receives the trace events of a {@link TestTracer}.
+ *
+ * Events can be received from multiple threads at the same time.
+ */
+public interface ITestTraceSink {
+    /**
+     * Receive an event.
+     * 
+     * @param kind
+     *            the kind of work, e.g. {@link TestTracer#PARSE}.
+     * @param resource
+     *            the test suite the work was for, if known.
+     * @param test
+     *            the description of the test the work was for, if any.
+     * @param detail
+     *            extra information, like the type of the evaluated expectation, if any.
+     * @param start
+     *            the start of the work, in nanoseconds as returned by {@link System#nanoTime()}.
+     * @param duration
+     *            the duration of the work, in nanoseconds.
+     */
+    public void event(String kind, @Nullable FileObject resource, @Nullable String test, @Nullable String detail,
+        long start, long duration);
+}
@@ -0,0 +1,72 @@
+package org.metaborg.mbt.core.run;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the wall time, CPU time and allocated bytes of a phase that runs on the current thread.
+ *
+ * CPU time and allocation are measured through the thread MX bean of the JVM. They are reported as -1 if the JVM does
+ * not support measuring them. Allocation is only available on JVMs that provide the
+ * {@code com.sun.management.ThreadMXBean} extension.
+ */
+public class PhaseTimer {
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final boolean cpuTimeSupported =
+        threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+    private static final boolean allocationSupported = allocationSupported();
+
+    private final long startWallTime;
+    private final long startCpuTime;
+    private final long startAllocatedBytes;
+
+
+    private PhaseTimer() {
+        this.startAllocatedBytes = allocatedBytes();
+        this.startCpuTime = cpuTime();
+        this.startWallTime = System.nanoTime();
+    }
+
+    /**
+     * Start measuring a phase on the current thread.
+     */
+    public static PhaseTimer start() {
+        return new PhaseTimer();
+    }
+
+    /**
+     * Stop measuring. Should be called on the thread that started the timer.
+     *
+     * @param phase
+     *            the name of the measured phase.
+     */
+    public PhaseTiming stop(String phase) {
+        final long wallTime = System.nanoTime() - startWallTime;
+        final long cpuTime = startCpuTime < 0 ? -1 : cpuTime() - startCpuTime;
+        final long allocatedBytes = startAllocatedBytes < 0 ? -1 : allocatedBytes() - startAllocatedBytes;
+        return new PhaseTiming(phase, wallTime, cpuTime, allocatedBytes);
+    }
+
+
+    private static long cpuTime() {
+        return cpuTimeSupported ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long allocatedBytes() {
+        if(!allocationSupported) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean allocationSupported() {
+        try {
+            return threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        } catch(LinkageError e) {
+            // not a HotSpot based JVM
+            return false;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.metaborg.mbt.core.run;
+
+/**
+ * The resources spent on a single phase of running a test, like parsing the fragment or evaluating an expectation.
+ */
+public class PhaseTiming {
+    private final String phase;
+    private final long wallTime;
+    private final long cpuTime;
+    private final long allocatedBytes;
+
+
+    public PhaseTiming(String phase, long wallTime, long cpuTime, long allocatedBytes) {
+        this.phase = phase;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * The name of the phase.
+     */
+    public String phase() {
+        return phase;
+    }
+
+    /**
+     * The elapsed time, in nanoseconds.
+     */
+    public long wallTime() {
+        return wallTime;
+    }
+
+    /**
+     * The CPU time of the thread that ran the phase, in nanoseconds, or -1 if the JVM does not measure CPU time.
+     */
+    public long cpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * The number of bytes allocated by the thread that ran the phase, or -1 if the JVM does not measure allocation.
+     */
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override public String toString() {
+        return phase + ": " + wallTime / 1000000 + " ms";
+    }
+}
@@ -1,6 +1,10 @@
 package org.metaborg.mbt.core.run;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -10,8 +14,6 @@ import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.analysis.IAnalyzeUnitUpdate;
 import org.metaborg.core.context.ContextException;
 import org.metaborg.core.context.IContext;
-import org.metaborg.core.context.IContextService;
-import org.metaborg.core.context.ITemporaryContext;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.core.messages.MessageFactory;
@@ -23,6 +25,7 @@ import org.metaborg.mbt.core.model.TestPhase;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
@@ -31,30 +34,105 @@ public abstract class TestCaseRunner<P extends IParseUnit, A extends IAnalyzeUni
 
     private static final ILogger logger = LoggerUtils.logger(TestCaseRunner.class);
 
+    /**
+     * The names of the phases in the timings of a test result.
+     */
+    public static final String PARSE_PHASE = "parse";
+    public static final String CONTEXT_PHASE = "context";
+    public static final String ANALYSIS_PHASE = "analysis";
+    public static final String EVALUATE_PHASE = "evaluate ";
+
     private final IAnalysisService<P, A, AU> analysisService;
-    private final IContextService contextService;
+    private final ContextPool contextPool;
     private final IFragmentParser<P> fragmentParser;
+    protected final TestTracer tracer;
+    protected final TestWatchdog watchdog;
 
+    private volatile boolean leanResults = false;
 
-    @Inject public TestCaseRunner(IAnalysisService<P, A, AU> analysisService, IContextService contextService,
-        IFragmentParser<P> fragmentParser) {
+
+    @Inject public TestCaseRunner(IAnalysisService<P, A, AU> analysisService, ContextPool contextPool,
+        IFragmentParser<P> fragmentParser, TestTracer tracer, TestWatchdog watchdog) {
         this.analysisService = analysisService;
-        this.contextService = contextService;
+        this.contextPool = contextPool;
         this.fragmentParser = fragmentParser;
+        this.tracer = tracer;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * Set whether test results should be lean.
+     * 
+     * Lean results only keep whether the test passed, its messages and its timings. The parse and analysis results of
+     * the fragments are dropped as soon as the expectations are evaluated, so that they can be garbage collected while
+     * the results of other tests are kept. Disabled by default.
+     */
+    public void setLeanResults(boolean leanResults) {
+        this.leanResults = leanResults;
     }
 
     /**
      * Guaranteed to return the result provided by the subclass' implementation of
-     * {@link #evaluateExpectations(ITestCase, IParseUnit, IAnalyzeUnit, ILanguageImpl)}.
+     * {@link #evaluateExpectations}, by {@link #leanResult} in lean mode, or by {@link #timedOutResult} on a timeout,
+     * with the wall time of the test added by {@link #timedResult}.
      */
     @Override public ITestResult<P, A> run(IProject project, ITestCase test, ILanguageImpl languageUnderTest,
         @Nullable ILanguageImpl dialectUnderTest, @Nullable IFragmentParserConfig fragmentParseConfig) {
+        return run(project, test, languageUnderTest, dialectUnderTest, fragmentParseConfig, CancellationToken.NEVER);
+    }
+
+    /**
+     * Run the given test, and stop evaluating its expectations once the given token is cancelled.
+     * 
+     * If the {@link TestWatchdog} has a timeout, the test runs on one of its worker threads. A test that times out
+     * fails with a message that says why, see {@link #timedOutResult}.
+     * 
+     * @see #run(IProject, ITestCase, ILanguageImpl, ILanguageImpl, IFragmentParserConfig)
+     */
+    protected ITestResult<P, A> run(final IProject project, final ITestCase test, final ILanguageImpl languageUnderTest,
+        final @Nullable ILanguageImpl dialectUnderTest, final @Nullable IFragmentParserConfig fragmentParseConfig,
+        final ICancellationToken cancel) {
+        final long startTime = System.nanoTime();
+        if(!watchdog.enabled()) {
+            return timedResult(runTest(project, test, languageUnderTest, dialectUnderTest, fragmentParseConfig, cancel),
+                System.nanoTime() - startTime);
+        }
+
+        final TestWatchdog.Watch<ITestResult<P, A>> watch = watchdog.watch(new Callable<ITestResult<P, A>>() {
+            @Override public ITestResult<P, A> call() throws Exception {
+                return runTest(project, test, languageUnderTest, dialectUnderTest, fragmentParseConfig, cancel);
+            }
+        });
+        final ITestResult<P, A> result;
+        try {
+            result = watch.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the test.", e);
+        }
+        if(result == null) {
+            logger.warn("Test case '{}' timed out: {}", test.getDescription(), watch.reason());
+            final List<IMessage> messages = Lists.newLinkedList();
+            messages.add(
+                MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(), watch.reason(), null));
+            return timedResult(timedOutResult(test, messages), System.nanoTime() - startTime);
+        }
+        return timedResult(result, System.nanoTime() - startTime);
+    }
+
+    private ITestResult<P, A> runTest(IProject project, ITestCase test, ILanguageImpl languageUnderTest,
+        @Nullable ILanguageImpl dialectUnderTest, @Nullable IFragmentParserConfig fragmentParseConfig,
+        ICancellationToken cancel) {
         logger.debug("About to run test case '{}' with language {}", test.getDescription(), languageUnderTest.id());
 
         List<IMessage> messages = Lists.newLinkedList();
+        List<PhaseTiming> timings = Lists.newArrayList();
 
         // parse the fragment
         final P parseRes;
+        watchdog.phase(PARSE_PHASE);
+        PhaseTimer timer = PhaseTimer.start();
+        long start = tracer.begin();
         try {
             parseRes =
                 fragmentParser.parse(test.getFragment(), languageUnderTest, dialectUnderTest, fragmentParseConfig);
@@ -62,42 +140,236 @@ public abstract class TestCaseRunner<P extends IParseUnit, A extends IAnalyzeUni
             // TODO: is this ok? or should we fail the test and gracefully return a message?
             throw new RuntimeException(e);
         }
+        timings.add(timer.stop(PARSE_PHASE));
+        tracer.end(TestTracer.PARSE, test.getResource(), test.getDescription(), null, start);
+        if(parseTimedOut(parseRes)) {
+            // the parser stopped by itself, the test did not fail on its own account
+            logger.warn("Test case '{}' timed out while parsing its fragment", test.getDescription());
+            messages.add(MessageFactory.newParseError(test.getResource(), test.getDescriptionRegion(),
+                "The test timed out while parsing its fragment.", null));
+            return timedOutResult(test, messages);
+        }
 
         // analyze the fragment if any expectation requires analysis
         A analysisRes = null;
-        ITemporaryContext context = null;
+        IContext context = null;
         try {
-            context = contextService.getTemporary(test.getResource(), project, languageUnderTest);
-            TestPhase phase = requiredPhase(test, context);
+            TestPhase phase = requiredPhase(test, contextPool.shared(project, languageUnderTest));
             if(phase.ordinal() > TestPhase.PARSING.ordinal()) {
+                watchdog.phase(CONTEXT_PHASE);
+                timer = PhaseTimer.start();
+                start = tracer.begin();
+                context = contextPool.get(test.getResource(), project, languageUnderTest);
+                timings.add(timer.stop(CONTEXT_PHASE));
+                tracer.end(TestTracer.CONTEXT, test.getResource(), test.getDescription(), null, start);
+                watchdog.phase(ANALYSIS_PHASE);
+                timer = PhaseTimer.start();
+                start = tracer.begin();
                 analysisRes = analysisService.analyze(parseRes, context).result();
+                timings.add(timer.stop(ANALYSIS_PHASE));
+                tracer.end(TestTracer.ANALYZE, test.getResource(), test.getDescription(), null, start);
             }
         } catch(ContextException | AnalysisException e) {
-            if(context != null) {
-                context.close();
-            }
             messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
                 "Failed to analyze the input fragment, which is required to evaluate some of the test expectations.",
                 e));
         }
 
         // evaluate the test expectations
-        final ITestResult<P, A> result =
-            evaluateExpectations(test, parseRes, analysisRes, languageUnderTest, messages, fragmentParseConfig);
+        final ITestResult<P, A> result;
+        try {
+            result = evaluateExpectations(test, parseRes, analysisRes, languageUnderTest, messages, timings,
+                fragmentParseConfig, cancel);
+        } finally {
+            // give back the analysis context for this test run
+            if(context != null) {
+                contextPool.release(project, languageUnderTest, context);
+            }
+        }
+
+        return leanResults ? leanResult(result) : result;
+    }
+
+    /**
+     * Run the given tests one after another.
+     * 
+     * Equivalent to calling {@link #runAll(IProject, Iterable, ILanguageImpl, ILanguageImpl, IFragmentParserConfig,
+     * ExecutorService)} without an executor.
+     */
+    public List<? extends ITestResult<P, A>> runAll(IProject project, Iterable<ITestCase> tests,
+        ILanguageImpl languageUnderTest, @Nullable ILanguageImpl dialectUnderTest,
+        @Nullable IFragmentParserConfig fragmentParseConfig) {
+        return runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, null);
+    }
+
+    /**
+     * Run the given tests, usually the tests of one test suite.
+     * 
+     * @param project
+     *            the project containing these tests.
+     * @param tests
+     *            the tests to run.
+     * @param languageUnderTest
+     *            the language under test to run these tests with.
+     * @param dialectUnderTest
+     *            see {@link #run(IProject, ITestCase, ILanguageImpl, ILanguageImpl, IFragmentParserConfig)}.
+     * @param fragmentParseConfig
+     *            a configuration parameter for the {@link IFragmentParser} that will be used throughout the test runs.
+     * @param executor
+     *            the executor on which each test is scheduled (e.g. a ForkJoinPool). If null, the tests are run one
+     *            after another on the calling thread.
+     * @return the results of the tests, in the same order as the given tests.
+     */
+    public List<? extends ITestResult<P, A>> runAll(IProject project, Iterable<ITestCase> tests,
+        ILanguageImpl languageUnderTest, @Nullable ILanguageImpl dialectUnderTest,
+        @Nullable IFragmentParserConfig fragmentParseConfig, @Nullable ExecutorService executor) {
+        final List<ITestResult<P, A>> results = Lists.newArrayList();
+        runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, executor,
+            new ITestListener<P, A>() {
+                @Override public void testStarted(ITestCase test) {
+                }
+
+                @Override public void testFinished(ITestResult<P, A> result) {
+                    results.add(result);
+                }
+            });
+        return results;
+    }
+
+    /**
+     * Run the given tests, and pass each result to the given listener as soon as it is available.
+     * 
+     * Unlike the other runAll methods, this does not keep the results of the tests around.
+     * 
+     * @param listener
+     *            the listener that receives the results, in the same order as the given tests.
+     * @see #runAll(IProject, Iterable, ILanguageImpl, ILanguageImpl, IFragmentParserConfig, ExecutorService)
+     */
+    public void runAll(IProject project, Iterable<ITestCase> tests, ILanguageImpl languageUnderTest,
+        @Nullable ILanguageImpl dialectUnderTest, @Nullable IFragmentParserConfig fragmentParseConfig,
+        @Nullable ExecutorService executor, ITestListener<P, A> listener) {
+        runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, executor, listener,
+            CancellationToken.NEVER);
+    }
 
-        // close the analysis context for this test run
-        if(context != null) {
-            context.close();
+    /**
+     * Run the given tests until they are done or the run is cancelled, and pass each result to the given listener as
+     * soon as it is available.
+     * 
+     * The token is checked before each test and between the expectations of a test. Once it is cancelled, no more tests
+     * are started, and the listener is not called for the tests that did not finish. A test of which not all
+     * expectations were evaluated fails with a message that the run was cancelled.
+     * 
+     * @param cancel
+     *            the token that cancels the run.
+     * @see #runAll(IProject, Iterable, ILanguageImpl, ILanguageImpl, IFragmentParserConfig, ExecutorService,
+     *      ITestListener)
+     */
+    public void runAll(final IProject project, Iterable<ITestCase> tests,
+        final ILanguageImpl languageUnderTest, final @Nullable ILanguageImpl dialectUnderTest,
+        final @Nullable IFragmentParserConfig fragmentParseConfig, @Nullable ExecutorService executor,
+        final ITestListener<P, A> listener, final ICancellationToken cancel) {
+        if(executor == null) {
+            for(ITestCase test : tests) {
+                if(cancel.isCancelled()) {
+                    return;
+                }
+                listener.testStarted(test);
+                final ITestResult<P, A> result =
+                    run(project, test, languageUnderTest, dialectUnderTest, fragmentParseConfig, cancel);
+                if(cancel.isCancelled()) {
+                    return;
+                }
+                listener.testFinished(result);
+            }
+            return;
         }
 
-        return result;
+        final List<ITestCase> submitted = Lists.newArrayList();
+        final List<Future<ITestResult<P, A>>> futures = Lists.newArrayList();
+        for(final ITestCase test : tests) {
+            submitted.add(test);
+            futures.add(executor.submit(new Callable<ITestResult<P, A>>() {
+                @Override public ITestResult<P, A> call() throws Exception {
+                    if(cancel.isCancelled()) {
+                        return null;
+                    }
+                    return run(project, test, languageUnderTest, dialectUnderTest, fragmentParseConfig, cancel);
+                }
+            }));
+        }
+        try {
+            for(int i = 0; i < futures.size(); i++) {
+                final ITestResult<P, A> result = futures.get(i).get();
+                if(cancel.isCancelled()) {
+                    cancel(futures);
+                    return;
+                }
+                // report the start here rather than on the pool, so that listeners see the events in test order
+                listener.testStarted(submitted.get(i));
+                listener.testFinished(result);
+                // don't keep the result around once the listener has it
+                futures.set(i, null);
+            }
+        } catch(ExecutionException e) {
+            cancel(futures);
+            throw Throwables.propagate(e.getCause());
+        } catch(InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the tests.", e);
+        }
+    }
+
+    private static void cancel(Iterable<? extends Future<?>> futures) {
+        for(Future<?> future : futures) {
+            if(future != null) {
+                future.cancel(true);
+            }
+        }
     }
 
     /**
      * Evaluate the expectations of the test.
+     * 
+     * @param timings
+     *            the timings of the phases that ran before evaluation. The timing of evaluating each expectation should
+     *            be added, with the {@link #EVALUATE_PHASE} prefix, and all timings should be put on the result. The
+     *            same phase names should be passed to {@link TestWatchdog#phase(String)}.
+     * @param cancel
+     *            the token to check between expectations. Once it is cancelled, the remaining expectations should not
+     *            be evaluated, and the test should fail.
      */
     protected abstract ITestResult<P, A> evaluateExpectations(ITestCase test, P parseRes, A analysisRes,
-        ILanguageImpl languageUnderTest, List<IMessage> messages, @Nullable IFragmentParserConfig fragmentParseConfig);
+        ILanguageImpl languageUnderTest, List<IMessage> messages, List<PhaseTiming> timings,
+        @Nullable IFragmentParserConfig fragmentParseConfig, ICancellationToken cancel);
+
+    /**
+     * Create the result of a test that timed out before its expectations could be evaluated.
+     * 
+     * The result should fail, and {@link ITestResult#isTimedOut()} should be true for it.
+     * 
+     * @param messages
+     *            the messages that explain why the test failed.
+     */
+    protected abstract ITestResult<P, A> timedOutResult(ITestCase test, List<IMessage> messages);
+
+    /**
+     * Whether the parser gave up on the given parse result because it took longer than its timeout.
+     * 
+     * Such a test gets a {@link #timedOutResult}, instead of failing on the parse error.
+     */
+    protected abstract boolean parseTimedOut(P parseRes);
+
+    /**
+     * Get a copy of the given result with the given wall time, see {@link ITestResult#getWallTime()}.
+     */
+    protected abstract ITestResult<P, A> timedResult(ITestResult<P, A> result, long wallTime);
+
+    /**
+     * Get a copy of the given result without the parse and analysis results of its fragments.
+     */
+    protected abstract ITestResult<P, A> leanResult(ITestResult<P, A> result);
 
     /**
      * The maximum required phase for this input fragment.
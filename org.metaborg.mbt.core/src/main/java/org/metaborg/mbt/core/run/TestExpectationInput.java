@@ -11,13 +11,20 @@ public class TestExpectationInput<P extends IParseUnit, A extends IAnalyzeUnit>
     private final ILanguageImpl lut;
     private final IFragmentResult<P, A> fragmentResult;
     private final IFragmentParserConfig fragmentConfig;
+    private final ICancellationToken cancel;
 
     public TestExpectationInput(ITestCase testCase, ILanguageImpl languageUnderTest,
         IFragmentResult<P, A> fragmentResult, IFragmentParserConfig fragmentConfig) {
+        this(testCase, languageUnderTest, fragmentResult, fragmentConfig, CancellationToken.NEVER);
+    }
+
+    public TestExpectationInput(ITestCase testCase, ILanguageImpl languageUnderTest,
+        IFragmentResult<P, A> fragmentResult, IFragmentParserConfig fragmentConfig, ICancellationToken cancel) {
         this.test = testCase;
         this.lut = languageUnderTest;
         this.fragmentResult = fragmentResult;
         this.fragmentConfig = fragmentConfig;
+        this.cancel = cancel;
     }
 
     @Override public ITestCase getTestCase() {
@@ -35,4 +42,8 @@ public class TestExpectationInput<P extends IParseUnit, A extends IAnalyzeUnit>
     @Override public IFragmentParserConfig getFragmentParserConfig() {
         return fragmentConfig;
     }
+
+    @Override public ICancellationToken getCancellationToken() {
+        return cancel;
+    }
 }
@@ -2,6 +2,8 @@ package org.metaborg.mbt.core.run;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.metaborg.core.analysis.IAnalyzeUnit;
 import org.metaborg.core.messages.IMessage;
@@ -19,14 +21,38 @@ public class TestResult<P extends IParseUnit, A extends IAnalyzeUnit> implements
     private final Iterable<IMessage> allMessages;
     private final IFragmentResult<P, A> fragmentResult;
     private final Iterable<? extends ITestExpectationOutput<P, A>> results;
+    private final List<PhaseTiming> timings;
+    private final boolean timedOut;
+    private final long wallTime;
 
     public TestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
         IFragmentResult<P, A> fragmentResult, Iterable<? extends ITestExpectationOutput<P, A>> results) {
+        this(test, success, messages, fragmentResult, results, Collections.<PhaseTiming>emptyList());
+    }
+
+    public TestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        IFragmentResult<P, A> fragmentResult, Iterable<? extends ITestExpectationOutput<P, A>> results,
+        List<PhaseTiming> timings) {
+        this(test, success, messages, fragmentResult, results, timings, false);
+    }
+
+    public TestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        IFragmentResult<P, A> fragmentResult, Iterable<? extends ITestExpectationOutput<P, A>> results,
+        List<PhaseTiming> timings, boolean timedOut) {
+        this(test, success, messages, fragmentResult, results, timings, timedOut, -1);
+    }
+
+    public TestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        IFragmentResult<P, A> fragmentResult, Iterable<? extends ITestExpectationOutput<P, A>> results,
+        List<PhaseTiming> timings, boolean timedOut, long wallTime) {
         this.test = test;
         this.success = success;
         this.messages = messages;
         this.fragmentResult = fragmentResult;
         this.results = Iterables2.from(results);
+        this.timings = timings;
+        this.timedOut = timedOut;
+        this.wallTime = wallTime;
 
         Collection<IMessage> allM = new ArrayList<>();
         Iterables.addAll(allM, messages);
@@ -60,4 +86,15 @@ public class TestResult<P extends IParseUnit, A extends IAnalyzeUnit> implements
         return results;
     }
 
+    @Override public List<PhaseTiming> getTimings() {
+        return timings;
+    }
+
+    @Override public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    @Override public long getWallTime() {
+        return wallTime;
+    }
 }
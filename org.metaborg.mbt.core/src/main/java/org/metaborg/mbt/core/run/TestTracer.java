@@ -0,0 +1,74 @@
+package org.metaborg.mbt.core.run;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+
+/**
+ * Emits trace events for the work done while extracting and running tests, so that profiles and traces of a test run
+ * can be attributed to test suites, tests and expectations.
+ *
+ * Events are only created when a sink is set. Without a sink, tracing costs a single volatile read per traced piece of
+ * work.
+ *
+ * Usage:
+ * 
+ * <pre>
+ * final long start = tracer.begin();
+ * // do the work
+ * tracer.end(TestTracer.PARSE, resource, test, null, start);
+ * </pre>
+ */
+public class TestTracer {
+    /**
+     * The kinds of work that are traced.
+     */
+    public static final String EXTRACT = "extract";
+    public static final String PARSE = "parse";
+    public static final String CONTEXT = "context";
+    public static final String ANALYZE = "analyze";
+    public static final String RUNTIME = "runtime";
+    public static final String EVALUATE = "evaluate";
+
+    private volatile ITestTraceSink sink;
+
+
+    /**
+     * Set the sink that receives the trace events.
+     * 
+     * @param sink
+     *            the sink, or null to disable tracing.
+     */
+    public void setSink(@Nullable ITestTraceSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * @return true if events are being recorded.
+     */
+    public boolean enabled() {
+        return sink != null;
+    }
+
+    /**
+     * Mark the start of a piece of work.
+     * 
+     * @return the start time to pass to {@link #end}, or 0 if tracing is disabled.
+     */
+    public long begin() {
+        return sink == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Mark the end of a piece of work that was started with {@link #begin()}, and emit its event.
+     */
+    public void end(String kind, @Nullable FileObject resource, @Nullable String test, @Nullable String detail,
+        long start) {
+        final ITestTraceSink sink = this.sink;
+        if(sink == null || start == 0) {
+            // tracing was disabled, or only enabled after the work started
+            return;
+        }
+        sink.event(kind, resource, test, detail, start, System.nanoTime() - start);
+    }
+}
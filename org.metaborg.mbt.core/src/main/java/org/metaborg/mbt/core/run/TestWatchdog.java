@@ -0,0 +1,183 @@
+package org.metaborg.mbt.core.run;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Bounds the time that a test, and each phase of a test, may take.
+ *
+ * When a timeout is set, each test is run on a worker thread, while the thread that runs the test waits for it. When
+ * the test or its current phase takes too long, the worker thread is interrupted and the waiting thread gives up on the
+ * test, so that the run can continue with the next test.
+ *
+ * Parsers and Stratego strategies do not always respond to interrupts. A worker thread that does not stop is left
+ * behind as a daemon thread, and keeps any resources it holds, such as an analysis context, until it finishes.
+ *
+ * Usage, on the worker thread:
+ *
+ * <pre>
+ * watchdog.phase(TestCaseRunner.PARSE_PHASE);
+ * // parse the fragment
+ * </pre>
+ */
+public class TestWatchdog {
+
+    private final ThreadLocal<Watch<?>> current = new ThreadLocal<>();
+    private final ExecutorService workers;
+
+    private volatile long testTimeout = 0;
+    private volatile long phaseTimeout = 0;
+
+
+    public TestWatchdog() {
+        final ThreadFactory threadFactory =
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("spt-test-worker-%d").build();
+        this.workers = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Set the maximum time that a single test may take.
+     *
+     * @param millis
+     *            the timeout in milliseconds, or 0 for no timeout.
+     */
+    public void setTestTimeout(long millis) {
+        this.testTimeout = Math.max(0, millis);
+    }
+
+    /**
+     * Set the maximum time that a single phase of a test may take, such as parsing the fragment or evaluating one of
+     * its expectations.
+     *
+     * @param millis
+     *            the timeout in milliseconds, or 0 for no timeout.
+     */
+    public void setPhaseTimeout(long millis) {
+        this.phaseTimeout = Math.max(0, millis);
+    }
+
+    /**
+     * @return true if tests are run with a timeout.
+     */
+    public boolean enabled() {
+        return testTimeout > 0 || phaseTimeout > 0;
+    }
+
+    /**
+     * Mark the start of the given phase of the test that runs on the calling thread. Does nothing if the calling thread
+     * does not run a test for this watchdog.
+     */
+    public void phase(String phase) {
+        final Watch<?> watch = current.get();
+        if(watch != null) {
+            watch.phase(phase);
+        }
+    }
+
+    /**
+     * Start the given test on a worker thread. Use {@link Watch#await()} to wait until it is done or it times out.
+     *
+     * @param test
+     *            runs the test.
+     * @return the watch of the test.
+     */
+    public <T> Watch<T> watch(final Callable<T> test) {
+        final Watch<T> watch = new Watch<>(testTimeout, phaseTimeout);
+        watch.future = workers.submit(new Callable<T>() {
+            @Override public T call() throws Exception {
+                current.set(watch);
+                try {
+                    return test.call();
+                } finally {
+                    current.remove();
+                }
+            }
+        });
+        return watch;
+    }
+
+
+    /**
+     * Watches a test that runs on a worker thread.
+     */
+    public static class Watch<T> {
+        private final long testDeadline;
+        private final long phaseTimeout;
+
+        private volatile Future<T> future;
+        private volatile String phase = null;
+        private volatile long phaseDeadline = Long.MAX_VALUE;
+        private volatile String reason = null;
+
+
+        private Watch(long testTimeout, long phaseTimeout) {
+            final long now = System.nanoTime();
+            this.testDeadline = testTimeout > 0 ? now + TimeUnit.MILLISECONDS.toNanos(testTimeout) : Long.MAX_VALUE;
+            this.phaseTimeout = phaseTimeout;
+        }
+
+        private void phase(String phase) {
+            this.phase = phase;
+            if(phaseTimeout > 0) {
+                phaseDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(phaseTimeout);
+            }
+        }
+
+        /**
+         * Wait for the test to finish.
+         *
+         * Interrupts the test when it times out.
+         *
+         * @return the result of the test, or null if it timed out.
+         */
+        public @Nullable T await() throws InterruptedException {
+            while(true) {
+                final long testDeadline = this.testDeadline;
+                final long phaseDeadline = this.phaseDeadline;
+                final long now = System.nanoTime();
+                if(testDeadline != Long.MAX_VALUE && now - testDeadline >= 0) {
+                    return timeout("The test did not finish within the test timeout.");
+                }
+                if(phaseDeadline != Long.MAX_VALUE && now - phaseDeadline >= 0) {
+                    return timeout("The " + phase + " phase of the test did not finish within the phase timeout.");
+                }
+                final long wait = Math.min(testDeadline, phaseDeadline) == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : Math.min(testDeadline, phaseDeadline) - now;
+                try {
+                    return future.get(wait, TimeUnit.NANOSECONDS);
+                } catch(TimeoutException e) {
+                    // check the deadlines again, as the phase may have changed in the meantime
+                } catch(ExecutionException e) {
+                    throw Throwables.propagate(e.getCause());
+                } catch(InterruptedException e) {
+                    future.cancel(true);
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * @return why the test timed out, or null if it did not time out.
+         */
+        public @Nullable String reason() {
+            return reason;
+        }
+
+        private T timeout(String reason) {
+            this.reason = reason;
+            future.cancel(true);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package org.metaborg.meta.lang.spt.interactive.strategies;
+
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.mbt.core.model.IFragment.FragmentPiece;
+import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.mbt.core.model.expectations.ITestExpectation;
+import org.metaborg.mbt.core.model.expectations.MessageUtil;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * The messages of the tests of a test suite from the last time it was analyzed in the editor, so that only the tests
+ * that were edited have to be run again.
+ *
+ * A test is identified by a hash of its text, the text of its fragment and the start symbol. Offsets are taken relative
+ * to the start of the test, so a test that only moved because text before it was edited keeps its result. The messages
+ * on the test and on its fragment are moved along with it. All results of a test suite are dropped when the language
+ * under test is reloaded. The language is only referenced weakly, so that the results do not keep an unloaded language
+ * in memory.
+ *
+ * Tests of which the result depends on other files, for example through analysis of the project, are not run again
+ * when only those files change.
+ *
+ * A test that is still running in the background for a previous analysis is not started again, the new analysis waits
+ * for it instead. A test is identified by its key, and belongs to the run that scheduled it. A run should stop running
+ * a test as soon as {@link #isCurrent(String, Object)} returns false for it, as its result is no longer needed.
+ */
+class EditorTestResults {
+
+    // test suites that are no longer being edited are dropped eventually
+    private static final Cache<String, EditorTestResults> suites =
+        CacheBuilder.newBuilder().maximumSize(64).<String, EditorTestResults>build();
+
+    private WeakReference<ILanguageImpl> languageUnderTest = new WeakReference<>(null);
+    private List<WeakReference<ILanguageComponent>> components = Lists.newArrayList();
+    private Map<String, Result> results = Maps.newHashMap();
+    private Set<String> wanted = Sets.newHashSet();
+    private final Map<String, Object> running = Maps.newHashMap();
+
+
+    /**
+     * Get the results of the given test suite.
+     */
+    public static EditorTestResults of(FileObject testSuite) {
+        try {
+            return suites.get(testSuite.getName().getURI(), new Callable<EditorTestResults>() {
+                @Override public EditorTestResults call() {
+                    return new EditorTestResults();
+                }
+            });
+        } catch(ExecutionException | UncheckedExecutionException e) {
+            // creating the results can't fail
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Drop all results if they were obtained with another language under test, or another version of it.
+     */
+    public synchronized void validate(ILanguageImpl lut) {
+        final List<ILanguageComponent> lutComponents = Lists.newArrayList(lut.components());
+        if(!lut.equals(languageUnderTest.get()) || !sameComponents(lutComponents)) {
+            languageUnderTest = new WeakReference<>(lut);
+            components = Lists.newArrayListWithCapacity(lutComponents.size());
+            for(ILanguageComponent component : lutComponents) {
+                components.add(new WeakReference<>(component));
+            }
+            results = Maps.newHashMap();
+            // the running tests use the old language, their results can't be used
+            running.clear();
+            notifyAll();
+        }
+    }
+
+    private boolean sameComponents(List<ILanguageComponent> lutComponents) {
+        if(lutComponents.size() != components.size()) {
+            return false;
+        }
+        for(int i = 0; i < lutComponents.size(); i++) {
+            // a component that was garbage collected was unloaded, so it is not the same
+            if(!lutComponents.get(i).equals(components.get(i).get())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the messages of the last run of the given test, moved to the current location of the test.
+     *
+     * Only the messages on the test itself or on the text of its fragment are moved. The key of a test includes the
+     * location of its fragment relative to the test, so fixture text moves along with the test. Messages elsewhere in
+     * the test suite stay where they are.
+     *
+     * @param key
+     *            the key of the test, see {@link #key(ITestCase, String, String)}.
+     * @return the messages, or null if the test has to be run.
+     */
+    public synchronized @Nullable List<IMessage> get(ITestCase test, String key) {
+        final Result result = results.get(key);
+        if(result == null) {
+            return null;
+        }
+        final int shift = start(test) - result.start;
+        if(shift == 0) {
+            return result.messages;
+        }
+        final List<IMessage> messages = Lists.newArrayListWithCapacity(result.messages.size());
+        for(IMessage message : result.messages) {
+            final ISourceRegion region = message.region();
+            if(region == null || !result.contains(region)) {
+                messages.add(message);
+            } else {
+                messages.add(MessageUtil.setRegion(message,
+                    new SourceRegion(region.startOffset() + shift, region.endOffset() + shift)));
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Schedule the given test for the given run, unless another run is already running it.
+     *
+     * @param run
+     *            identifies the run.
+     * @return true if the test was scheduled, false if another run is running it.
+     */
+    public synchronized boolean schedule(String key, Object run) {
+        if(running.containsKey(key)) {
+            return false;
+        }
+        running.put(key, run);
+        return true;
+    }
+
+    /**
+     * Whether the result of the given test is still needed from the given run.
+     *
+     * This is no longer the case when the test was removed or changed, or when the language under test was reloaded.
+     */
+    public synchronized boolean isCurrent(String key, Object run) {
+        return running.get(key) == run && wanted.contains(key);
+    }
+
+    /**
+     * Mark the given test as no longer running for the given run.
+     */
+    public synchronized void finish(String key, Object run) {
+        if(running.get(key) == run) {
+            running.remove(key);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Wait until none of the given tests are running, or until the given time has passed.
+     */
+    public synchronized void await(Collection<String> keys, long millis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while(remaining > 0 && !Collections.disjoint(running.keySet(), keys)) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Store the messages of a run of the given test.
+     *
+     * The messages are only stored if the result is still needed from the given run, see
+     * {@link #isCurrent(String, Object)}. Results of cancelled runs are not stored, as they may be incomplete.
+     */
+    public synchronized void put(ITestCase test, String key, Object run, Iterable<IMessage> messages) {
+        if(!isCurrent(key, run)) {
+            return;
+        }
+        final List<ISourceRegion> regions = Lists.newArrayList();
+        regions.add(new SourceRegion(start(test), end(test)));
+        for(FragmentPiece piece : test.getFragment().getText()) {
+            regions.add(new SourceRegion(piece.startOffset, piece.startOffset + piece.text.length()));
+        }
+        results.put(key, new Result(start(test), regions, Lists.newArrayList(messages)));
+    }
+
+    /**
+     * Drop the results of all tests except the given ones, which are the tests that are currently in the test suite.
+     *
+     * Running tests that are not among them are no longer current.
+     */
+    public synchronized void retain(Set<String> keys) {
+        results.keySet().retainAll(keys);
+        wanted = Sets.newHashSet(keys);
+        running.keySet().retainAll(keys);
+        notifyAll();
+    }
+
+    /**
+     * Create the key of a test.
+     *
+     * @param test
+     *            the test.
+     * @param suiteText
+     *            the text of the test suite that contains the test.
+     * @param startSymbol
+     *            the start symbol that is used to parse the fragment of the test.
+     * @return the key.
+     */
+    public static String key(ITestCase test, String suiteText, @Nullable String startSymbol) {
+        final int start = start(test);
+        final int end = Math.min(suiteText.length(), end(test) + 1);
+
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(suiteText.substring(start, Math.max(start, end)), Charsets.UTF_8);
+        // the fragment may contain text from outside the test, such as a fixture
+        for(FragmentPiece piece : test.getFragment().getText()) {
+            hasher.putInt(piece.startOffset - start);
+            hasher.putString(piece.text, Charsets.UTF_8);
+        }
+        hasher.putString(String.valueOf(startSymbol), Charsets.UTF_8);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * The offset at which the given test starts in its test suite.
+     */
+    private static int start(ITestCase test) {
+        // the test spans from its description until the end of its last expectation
+        int start = test.getDescriptionRegion().startOffset();
+        for(ITestExpectation expectation : test.getExpectations()) {
+            final ISourceRegion region = expectation.region();
+            if(region != null) {
+                start = Math.min(start, region.startOffset());
+            }
+        }
+        return Math.max(0, start);
+    }
+
+    /**
+     * The offset of the last character of the given test in its test suite.
+     */
+    private static int end(ITestCase test) {
+        int end = Math.max(test.getDescriptionRegion().endOffset(), test.getFragment().getRegion().endOffset());
+        for(ITestExpectation expectation : test.getExpectations()) {
+            final ISourceRegion region = expectation.region();
+            if(region != null) {
+                end = Math.max(end, region.endOffset());
+            }
+        }
+        return end;
+    }
+
+
+    private static class Result {
+        private final int start;
+        private final List<ISourceRegion> regions;
+        private final List<IMessage> messages;
+
+        public Result(int start, List<ISourceRegion> regions, List<IMessage> messages) {
+            this.start = start;
+            this.regions = regions;
+            this.messages = messages;
+        }
+
+        /**
+         * Whether the given region is on the test or its fragment, as they were when the test was run.
+         */
+        public boolean contains(ISourceRegion region) {
+            for(ISourceRegion testRegion : regions) {
+                if(testRegion.contains(region)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
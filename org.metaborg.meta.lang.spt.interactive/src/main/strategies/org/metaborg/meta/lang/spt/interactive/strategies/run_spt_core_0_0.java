@@ -1,8 +1,15 @@
 package org.metaborg.meta.lang.spt.interactive.strategies;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.context.IContext;
@@ -15,6 +22,9 @@ import org.metaborg.core.project.IProjectService;
 import org.metaborg.core.resource.IResourceService;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.mbt.core.run.CancellationToken;
+import org.metaborg.mbt.core.run.ContextPool;
+import org.metaborg.mbt.core.run.ICancellationToken;
 import org.metaborg.spoofax.core.syntax.JSGLRParserConfiguration;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
@@ -22,28 +32,32 @@ import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
 import org.metaborg.spoofax.core.unit.ParseContrib;
-import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.SPTServices;
 import org.metaborg.spt.core.SPTUtil;
 import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractionResult;
 import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractor;
 import org.metaborg.spt.core.run.ISpoofaxFragmentParserConfig;
-import org.metaborg.spt.core.run.ISpoofaxTestCaseRunner;
+import org.metaborg.spt.core.run.ISpoofaxTestListener;
 import org.metaborg.spt.core.run.ISpoofaxTestResult;
 import org.metaborg.spt.core.run.SpoofaxFragmentParserConfig;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
 import org.metaborg.util.iterators.Iterables2;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.interpreter.terms.IStrategoTuple;
 import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.jsglr.client.imploder.ITokenizer;
 import org.spoofax.jsglr.client.imploder.ImploderAttachment;
 import org.spoofax.terms.Term;
 import org.strategoxt.lang.Context;
 import org.strategoxt.lang.Strategy;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.inject.Injector;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class run_spt_core_0_0 extends Strategy {
     private static final ILogger logger = LoggerUtils.logger(run_spt_core_0_0.class);
@@ -56,18 +70,19 @@ public class run_spt_core_0_0 extends Strategy {
     private static final String START = "StartSymbol";
 
 
-    private static Map<Injector, Injector> injectorMap = Maps.newHashMap();
+    // how long the analysis waits for the tests to finish, before it reports the results of the finished tests only
+    private static final long RUN_TIME_BOX_MILLIS = 3000;
+
+    // the number of test suites of which the tests run in the background at the same time, further runs wait
+    private static final int BACKGROUND_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private static final ExecutorService backgroundRuns = newBackgroundRuns();
 
 
     @Override public IStrategoTerm invoke(Context strategoContext, IStrategoTerm current) {
         // Get the injector for the required services
         final IContext context = (IContext) strategoContext.contextObject();
-        final Injector spoofaxInjector = context.injector();
-        Injector injector = injectorMap.get(spoofaxInjector);
-        if(injector == null) {
-            injector = spoofaxInjector.createChildInjector(new SPTModule());
-            injectorMap.put(spoofaxInjector, injector);
-        }
+        final SPTServices services = SPTServices.of(context.injector());
 
         // Setup the things we need to return
         IStrategoTerm ast = null;
@@ -77,13 +92,14 @@ public class run_spt_core_0_0 extends Strategy {
         final List<IStrategoTerm> notes = Lists.newLinkedList();
 
         // Get required services
-        final ISpoofaxInputUnitService inputService = injector.getInstance(ISpoofaxInputUnitService.class);
-        final ISpoofaxUnitService unitService = injector.getInstance(ISpoofaxUnitService.class);
-        final IResourceService resourceService = injector.getInstance(IResourceService.class);
-        final IProjectService projectService = injector.getInstance(IProjectService.class);
-        final ILanguageService langService = injector.getInstance(ILanguageService.class);
-        final ISpoofaxTestCaseExtractor extractor = injector.getInstance(ISpoofaxTestCaseExtractor.class);
-        final ISpoofaxTestCaseRunner runner = injector.getInstance(ISpoofaxTestCaseRunner.class);
+        final ISpoofaxInputUnitService inputService = services.inputService;
+        final ISpoofaxUnitService unitService = services.unitService;
+        final IResourceService resourceService = services.resourceService;
+        final IProjectService projectService = services.projectService;
+        final ILanguageService langService = services.langService;
+        final ISpoofaxTestCaseExtractor extractor = services.extractor;
+        final SpoofaxTestCaseRunner runner = services.runner;
+        final ContextPool contextPool = services.contextPool;
 
         // input term should be (ast, relative-path, project-path)
         if(!(current instanceof IStrategoTuple) || current.getSubtermCount() != 3) {
@@ -216,30 +232,159 @@ public class run_spt_core_0_0 extends Strategy {
         if(fragmentConfig != null) {
             fragmentConfig.putConfig(lut, new JSGLRParserConfiguration(startSymbol));
         }
-        List<ISpoofaxTestResult> testResults = Lists.newLinkedList();
+        // only run the tests that changed since the last analysis, and reuse the messages of the others
+        // tests that a previous analysis is still running are not started again, this analysis waits for them instead
+        final ITokenizer tokenizer = ImploderAttachment.getTokenizer(baseAst);
+        final String suiteText = tokenizer == null ? null : tokenizer.getInput();
+        final EditorTestResults previousResults = EditorTestResults.of(testSuitePath);
+        previousResults.validate(lut);
+        // identifies the tests that this analysis runs
+        final Object run = new Object();
+        final List<ITestCase> tests = Lists.newArrayList();
+        final List<ITestCase> pendingTests = Lists.newArrayList();
+        final Map<ITestCase, String> keys = Maps.newIdentityHashMap();
         for(ITestCase test : extractionResult.getTests()) {
-            logger.debug("About to run test {}.", test.getDescription());
-            // TODO: we don't support dialects yet
-            ISpoofaxTestResult result = runner.run(project, test, lut, null, fragmentConfig);
-            logger.debug("Ran test {}.", test.getDescription());
-            testResults.add(result);
-            if(result.isSuccessful()) {
-                gatherMessages(ast, testSuitePath, result.getAllMessages(), errors, warnings, notes, termFactory);
+            final String key = suiteText == null ? null : EditorTestResults.key(test, suiteText, startSymbol);
+            final List<IMessage> messages = key == null ? null : previousResults.get(test, key);
+            if(messages == null) {
+                pendingTests.add(test);
+                if(key == null || previousResults.schedule(key, run)) {
+                    tests.add(test);
+                }
+            } else {
+                gatherMessages(ast, testSuitePath, messages, errors, warnings, notes, termFactory);
+            }
+            if(key != null) {
+                keys.put(test, key);
+            }
+        }
+        previousResults.retain(Sets.newHashSet(keys.values()));
+        logger.debug("Reusing the results of {} tests, waiting for {} tests that are already running.",
+            keys.size() - pendingTests.size(), pendingTests.size() - tests.size());
+
+        logger.debug("About to run the tests.");
+        // run the tests in the background, and only wait for them for a while, to keep the editor responsive
+        // a test is cancelled when a new analysis of this test suite no longer needs its result
+        final List<IMessage> finishedMessages = Lists.newArrayList();
+        final Set<ITestCase> finishedTests = Sets.newIdentityHashSet();
+        final boolean[] published = { false };
+        final CountDownLatch done = new CountDownLatch(1);
+        final ISpoofaxTestListener listener = new ISpoofaxTestListener() {
+            @Override public void suiteStarted(FileObject testSuite) {
+            }
+
+            @Override public void testStarted(ITestCase test) {
+            }
+
+            @Override public void testFinished(ISpoofaxTestResult result) {
+                final ITestCase test = result.getTest();
+                if(!result.isSuccessful()) {
+                    logger.debug("TestCase {} of test suite {} failed.", test.getDescription(),
+                        testSuitePath.getName());
+                }
+                // a failing test is assumed to have at least one error in its result
+                final Iterable<IMessage> messages = result.getAllMessages();
+                final String key = keys.get(test);
+                if(key != null) {
+                    // a test that timed out is run again next time
+                    if(!result.isTimedOut()) {
+                        previousResults.put(test, key, run, messages);
+                    }
+                    return;
+                }
+                // gather the messages of each test as soon as it is done, instead of keeping all results around
+                synchronized(finishedMessages) {
+                    if(!published[0]) {
+                        Iterables.addAll(finishedMessages, messages);
+                        finishedTests.add(test);
+                    }
+                }
                 // TODO: inline the AST of the fragment in the token stream to get syntax highlighting
                 // TODO: we might want to replace the SPT fragment node with the parsed/analyzed fragment AST
-            } else {
-                logger.debug("TestCase {} of test suite {} failed.", test.getDescription(), testSuitePath.getName());
-                // We assume a failing test has at least one error in its result
-                gatherMessages(ast, testSuitePath, result.getAllMessages(), errors, warnings, notes, termFactory);
             }
+
+            @Override public void suiteFinished(FileObject testSuite) {
+            }
+        };
+        final ISpoofaxFragmentParserConfig runFragmentConfig = fragmentConfig;
+        backgroundRuns.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    for(ITestCase test : tests) {
+                        runTest(test);
+                    }
+                } finally {
+                    // the contexts would otherwise be kept for every test suite that was ever edited
+                    contextPool.clear(testSuitePath);
+                    done.countDown();
+                }
+            }
+
+            private void runTest(ITestCase test) {
+                final String key = keys.get(test);
+                final ICancellationToken cancel = key == null ? CancellationToken.NEVER : new ICancellationToken() {
+                    @Override public boolean isCancelled() {
+                        return !previousResults.isCurrent(key, run);
+                    }
+                };
+                try {
+                    // TODO: we don't support dialects yet
+                    runner.runAll(project, Collections.singletonList(test), lut, null, runFragmentConfig, null,
+                        listener, cancel);
+                } catch(RuntimeException e) {
+                    logger.error("Running test {} of {} failed.", e, test.getDescription(), testSuitePath);
+                } finally {
+                    if(key != null) {
+                        previousResults.finish(key, run);
+                    }
+                }
+            }
+        });
+        try {
+            final long deadline = System.currentTimeMillis() + RUN_TIME_BOX_MILLIS;
+            final boolean ranAll = done.await(RUN_TIME_BOX_MILLIS, TimeUnit.MILLISECONDS);
+            previousResults.await(keys.values(), deadline - System.currentTimeMillis());
+            if(!ranAll) {
+                logger.debug("Not all tests of {} finished in time, reporting the finished ones.", testSuitePath);
+            }
+        } catch(InterruptedException e) {
+            // the analysis was cancelled, the tests keep running for the next analysis
+            Thread.currentThread().interrupt();
         }
 
+        // publish the results of the tests that are done, the others keep running and are reported next time
+        synchronized(finishedMessages) {
+            published[0] = true;
+            gatherMessages(ast, testSuitePath, finishedMessages, errors, warnings, notes, termFactory);
+        }
+        for(ITestCase test : pendingTests) {
+            final String key = keys.get(test);
+            final List<IMessage> messages = key == null ? null : previousResults.get(test, key);
+            if(messages != null) {
+                gatherMessages(ast, testSuitePath, messages, errors, warnings, notes, termFactory);
+            } else if(!finishedTests.contains(test)) {
+                notes.add(termFactory.makeTuple(
+                    createTermWithRegion(test.getDescriptionRegion(), testSuitePath, termFactory),
+                    termFactory.makeString("This test is still running. Its result is shown after the next change.")));
+            }
+        }
+        logger.debug("Ran the tests.");
+
         // TODO: get syntax coloring on the fragments
 
         return termFactory.makeTuple(ast, termFactory.makeList(errors), termFactory.makeList(warnings),
             termFactory.makeList(notes));
     }
 
+    private static ExecutorService newBackgroundRuns() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("spt-editor-run-%d").build());
+        // don't keep threads around while no test suites are edited
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private static void gatherMessages(IStrategoTerm defaultTerm, FileObject testSuite, Iterable<IMessage> messages,
         Collection<IStrategoTerm> errors, Collection<IStrategoTerm> warnings, Collection<IStrategoTerm> notes,
         ITermFactory termFactory) {
@@ -0,0 +1,58 @@
+package org.metaborg.spt.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.metaborg.core.MetaborgException;
+import org.metaborg.core.messages.MessageSeverity;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.mbt.core.model.expectations.AnalysisMessageExpectation;
+import org.metaborg.mbt.core.model.expectations.ITestExpectation;
+import org.metaborg.mbt.core.model.expectations.ParseExpectation;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spt.cmd.Module;
+import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.run.ISpoofaxExpectationEvaluator;
+import org.metaborg.spt.core.run.ISpoofaxExpectationEvaluatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures looking up the evaluator of an expectation, which happens for every expectation of every test.
+ * 
+ * Only needs a Spoofax instance, no languages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluatorLookupBenchmark {
+    private Spoofax spoofax;
+    private ISpoofaxExpectationEvaluatorService evaluatorService;
+    private ITestExpectation parse;
+    private ITestExpectation analysis;
+
+
+    @Setup public void setup() throws MetaborgException {
+        spoofax = new Spoofax(new Module(), new SPTModule());
+        evaluatorService = spoofax.injector.getInstance(ISpoofaxExpectationEvaluatorService.class);
+        parse = new ParseExpectation(new SourceRegion(0, 0), true);
+        analysis = new AnalysisMessageExpectation(new SourceRegion(0, 0), 1, MessageSeverity.ERROR);
+    }
+
+    @TearDown public void tearDown() {
+        spoofax.close();
+    }
+
+    @Benchmark public ISpoofaxExpectationEvaluator<ITestExpectation> parse() {
+        return evaluatorService.lookup(parse);
+    }
+
+    @Benchmark public ISpoofaxExpectationEvaluator<ITestExpectation> analysis() {
+        return evaluatorService.lookup(analysis);
+    }
+}
@@ -0,0 +1,96 @@
+package org.metaborg.spt.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.mbt.core.model.Fragment;
+import org.metaborg.mbt.core.model.IFragment;
+import org.metaborg.mbt.core.model.IFragment.FragmentPiece;
+import org.metaborg.mbt.core.run.WhitespaceFragmentParser;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures the construction of the text that is parsed for a fragment, by the whitespace padding parser and by the
+ * relocating parser.
+ * 
+ * The fragments are synthetic, so no language is required.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FragmentTextBenchmark {
+    /**
+     * The offset of the fragment in the test suite.
+     */
+    @Param({ "0", "10000", "100000" }) public int offset;
+
+    /**
+     * The number of pieces of the fragment, i.e. the number of selections times two plus one.
+     */
+    @Param({ "1", "9" }) public int pieces;
+
+    private IFragment fragment;
+    private WhitespaceText whitespace;
+    private RelocatingText relocating;
+
+
+    @Setup public void setup() {
+        final String pieceText = "x + y * f(z, 42)\n";
+        final List<FragmentPiece> text = Lists.newArrayList();
+        int pieceOffset = offset;
+        for(int i = 0; i < pieces; i++) {
+            text.add(new FragmentPiece(pieceOffset, pieceText));
+            // skip the selection markers
+            pieceOffset += pieceText.length() + 2;
+        }
+        final ISourceRegion region = new SourceRegion(offset, pieceOffset);
+        fragment = new Fragment(region, Lists.<ISourceRegion>newArrayList(), text, null, null);
+
+        whitespace = new WhitespaceText();
+        relocating = new RelocatingText();
+    }
+
+    @Benchmark public String whitespace() {
+        return whitespace.text(fragment);
+    }
+
+    @Benchmark public String relocating() {
+        return relocating.text(fragment);
+    }
+
+
+    private static class WhitespaceText extends WhitespaceFragmentParser<ISpoofaxInputUnit, ISpoofaxParseUnit> {
+        public WhitespaceText() {
+            super(null, null);
+        }
+
+        public String text(IFragment fragment) {
+            return getWhitespacedFragmentText(fragment);
+        }
+    }
+
+    private static class RelocatingText extends SpoofaxRelocatingFragmentParser {
+        public RelocatingText() {
+            super(null, null, null, null);
+        }
+
+        public String text(IFragment fragment) {
+            // the offset map has no public constructor
+            return getFragmentText(fragment, new OffsetMap() {});
+        }
+    }
+}
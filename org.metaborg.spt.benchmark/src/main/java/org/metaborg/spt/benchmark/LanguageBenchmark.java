@@ -0,0 +1,121 @@
+package org.metaborg.spt.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.MetaborgException;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageDiscoveryService;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.LanguageUtils;
+import org.metaborg.core.project.IProject;
+import org.metaborg.core.project.ISimpleProjectService;
+import org.metaborg.core.resource.IResourceService;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
+import org.metaborg.spt.cmd.Module;
+import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractionResult;
+import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractor;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Measures extracting and running a test suite with real languages.
+ * 
+ * Extraction covers parsing and analyzing the suite with the SPT language, and building the fragments of its tests.
+ * Running covers parsing, analyzing and evaluating the expectations of all tests with the language under test.
+ * 
+ * The languages and the suite are not bundled with the benchmarks, pass their locations with JMH's -p option.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LanguageBenchmark {
+    /**
+     * Location of the SPT language.
+     */
+    @Param({ "" }) public String spt;
+
+    /**
+     * Location of the language under test.
+     */
+    @Param({ "" }) public String lut;
+
+    /**
+     * Location of the test suite.
+     */
+    @Param({ "" }) public String suite;
+
+    private Spoofax spoofax;
+    private ISpoofaxTestCaseExtractor extractor;
+    private SpoofaxTestCaseRunner runner;
+    private IProject project;
+    private ILanguageImpl lutImpl;
+    private ISpoofaxInputUnit input;
+    private ISpoofaxTestCaseExtractionResult extraction;
+
+
+    @Setup public void setup() throws MetaborgException, IOException {
+        if(spt.isEmpty() || lut.isEmpty() || suite.isEmpty()) {
+            throw new IllegalArgumentException(
+                "Pass the locations of the SPT language, the language under test and the test suite, "
+                    + "e.g. -p spt=<path> -p lut=<path> -p suite=<path>");
+        }
+        spoofax = new Spoofax(new Module(), new SPTModule());
+        final IResourceService resourceService = spoofax.injector.getInstance(IResourceService.class);
+        final ILanguageDiscoveryService discoveryService =
+            spoofax.injector.getInstance(ILanguageDiscoveryService.class);
+
+        final Iterable<ILanguageComponent> sptComponents =
+            discoveryService.discover(discoveryService.request(resourceService.resolve(spt)));
+        final ILanguageImpl sptImpl = LanguageUtils.toImpls(sptComponents).iterator().next();
+        final Iterable<ILanguageComponent> lutComponents =
+            discoveryService.discover(discoveryService.request(resourceService.resolve(lut)));
+        lutImpl = LanguageUtils.toImpls(lutComponents).iterator().next();
+
+        final FileObject suiteFile = resourceService.resolve(suite);
+        project = spoofax.injector.getInstance(ISimpleProjectService.class).create(suiteFile.getParent());
+        final String text;
+        try(InputStream in = suiteFile.getContent().getInputStream()) {
+            text = IOUtils.toString(in, Charsets.UTF_8);
+        }
+        input = spoofax.injector.getInstance(ISpoofaxInputUnitService.class).inputUnit(suiteFile, text, sptImpl,
+            null);
+
+        extractor = spoofax.injector.getInstance(ISpoofaxTestCaseExtractor.class);
+        runner = spoofax.injector.getInstance(SpoofaxTestCaseRunner.class);
+        extraction = extractor.extract(input, project);
+        if(!extraction.isSuccessful()) {
+            throw new IllegalArgumentException("Failed to extract the tests of " + suite);
+        }
+    }
+
+    @TearDown public void tearDown() {
+        spoofax.close();
+    }
+
+    @Benchmark public ISpoofaxTestCaseExtractionResult extract() {
+        return extractor.extract(input, project);
+    }
+
+    @Benchmark public List<ISpoofaxTestResult> runAll() {
+        return runner.runAll(project, extraction.getTests(), lutImpl, null, null);
+    }
+}
@@ -0,0 +1,69 @@
+package org.metaborg.spt.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.spoofax.interpreter.terms.IStrategoConstructor;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.terms.TermFactory;
+import org.strategoxt.lang.TermEqualityUtil;
+
+/**
+ * Measures the comparison of ASTs that is used by the 'parse to', 'run to' and 'transform to' expectations.
+ * 
+ * The ASTs are balanced binary trees. The expected AST is equal to the actual one, or differs in its last leaf.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TermEqualityBenchmark {
+    /**
+     * The depth of the compared trees.
+     */
+    @Param({ "4", "12" }) public int depth;
+
+    private ITermFactory factory;
+    private IStrategoTerm actual;
+    private IStrategoTerm equal;
+    private IStrategoTerm different;
+
+
+    @Setup public void setup() {
+        factory = new TermFactory();
+        final IStrategoConstructor add = factory.makeConstructor("Add", 2);
+        actual = tree(add, depth, "x");
+        equal = tree(add, depth, "x");
+        different = factory.makeAppl(add, tree(add, depth - 1, "x"), replaceLast(add, depth - 1));
+    }
+
+    @Benchmark public boolean equal() {
+        return TermEqualityUtil.equalsIgnoreAnnos(equal, actual, factory);
+    }
+
+    @Benchmark public boolean different() {
+        return TermEqualityUtil.equalsIgnoreAnnos(different, actual, factory);
+    }
+
+
+    private IStrategoTerm tree(IStrategoConstructor cons, int depth, String leaf) {
+        if(depth <= 0) {
+            return factory.makeString(leaf);
+        }
+        return factory.makeAppl(cons, tree(cons, depth - 1, leaf), tree(cons, depth - 1, leaf));
+    }
+
+    private IStrategoTerm replaceLast(IStrategoConstructor cons, int depth) {
+        if(depth <= 0) {
+            return factory.makeString("y");
+        }
+        return factory.makeAppl(cons, tree(cons, depth - 1, "x"), replaceLast(cons, depth - 1));
+    }
+}
@@ -0,0 +1,24 @@
+package org.metaborg.spt.benchmark.scale;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+@Parameters(separators = "=")
+public class FootprintArguments {
+    @Parameter(names = { "--help", "-h" }, description = "Shows usage help", required = false,
+        help = true) public boolean help;
+
+
+    @Parameter(names = { "--lut", "-l" }, description = "Location of the language under test",
+        required = true) public String lutLocation;
+
+    @Parameter(names = { "--spt", "-s" }, description = "Location of the SPT language",
+        required = true) public String sptLocation;
+
+    @Parameter(names = { "--tests", "-t" }, description = "Location of test files",
+        required = true) public String testsLocation;
+
+
+    @Parameter(names = { "--repeat" }, description = "Number of times each test is run and its result kept",
+        required = false) public int repeat = 1;
+}
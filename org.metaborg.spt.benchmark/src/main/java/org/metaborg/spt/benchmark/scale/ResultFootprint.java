@@ -0,0 +1,128 @@
+package org.metaborg.spt.benchmark.scale;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.language.ILanguageDiscoveryService;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.LanguageUtils;
+import org.metaborg.core.project.IProject;
+import org.metaborg.core.project.ISimpleProjectService;
+import org.metaborg.core.resource.IResourceService;
+import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
+import org.metaborg.spt.cmd.Module;
+import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractionResult;
+import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractor;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+import org.metaborg.util.resource.FileSelectorUtils;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.inject.Injector;
+
+/**
+ * Compares the heap that is retained by the results of running tests, with and without lean results.
+ *
+ * Extracts all test suites at the given location, runs their tests in both modes while keeping all results, and
+ * reports the retained heap per test after a full garbage collection. Run it with the same heap settings as the test
+ * runs it should predict, and use test suites from the {@link SuiteGenerator} for suites of any size.
+ */
+public class ResultFootprint {
+    private static final ILogger logger = LoggerUtils.logger(ResultFootprint.class);
+
+
+    public static void main(String[] args) {
+        final FootprintArguments arguments = new FootprintArguments();
+        final JCommander jc = new JCommander(arguments);
+
+        try {
+            jc.parse(args);
+        } catch(ParameterException e) {
+            logger.error("Could not parse parameters", e);
+            jc.usage();
+            System.exit(1);
+        }
+
+        if(arguments.help) {
+            jc.usage();
+            System.exit(0);
+        }
+
+        try(final Spoofax spoofax = new Spoofax(new Module(), new SPTModule())) {
+            final Injector injector = spoofax.injector;
+            final IResourceService resourceService = injector.getInstance(IResourceService.class);
+            final ILanguageDiscoveryService discoveryService = injector.getInstance(ILanguageDiscoveryService.class);
+            final ISpoofaxInputUnitService inputService = injector.getInstance(ISpoofaxInputUnitService.class);
+            final ISpoofaxTestCaseExtractor extractor = injector.getInstance(ISpoofaxTestCaseExtractor.class);
+            final SpoofaxTestCaseRunner runner = injector.getInstance(SpoofaxTestCaseRunner.class);
+            // cached parse results would be retained in both modes
+            injector.getInstance(SpoofaxRelocatingFragmentParser.class).setCacheSize(0);
+
+            final ILanguageImpl spt = LanguageUtils.toImpls(discoveryService
+                .discover(discoveryService.request(resourceService.resolve(arguments.sptLocation)))).iterator().next();
+            final ILanguageImpl lut = LanguageUtils.toImpls(discoveryService
+                .discover(discoveryService.request(resourceService.resolve(arguments.lutLocation)))).iterator().next();
+            final FileObject testsLocation = resourceService.resolve(arguments.testsLocation);
+            final IProject project = injector.getInstance(ISimpleProjectService.class).create(testsLocation);
+
+            // extract up front, so that only the test results differ between the measurements
+            final List<ITestCase> tests = Lists.newArrayList();
+            for(FileObject testSuite : testsLocation.findFiles(FileSelectorUtils.extension("spt"))) {
+                final String text;
+                try(InputStream in = testSuite.getContent().getInputStream()) {
+                    text = IOUtils.toString(in, Charsets.UTF_8);
+                }
+                final ISpoofaxTestCaseExtractionResult extraction =
+                    extractor.extract(inputService.inputUnit(testSuite, text, spt, null), project);
+                if(!extraction.isSuccessful()) {
+                    logger.error("Failed to extract the tests of {}, skipping it", testSuite);
+                    continue;
+                }
+                Iterables.addAll(tests, extraction.getTests());
+            }
+
+            // both modes twice, the first round also warms up
+            for(boolean lean : new boolean[] { false, true, false, true }) {
+                runner.setLeanResults(lean);
+                final long before = usedHeap();
+                final List<ISpoofaxTestResult> results = Lists.newArrayList();
+                for(int i = 0; i < arguments.repeat; i++) {
+                    results.addAll(runner.runAll(project, tests, lut, null, null));
+                }
+                final long retained = usedHeap() - before;
+                logger.info("{} results: {} results retain {} KB, {} bytes per result", lean ? "Lean" : "Full",
+                    results.size(), retained / 1024, results.isEmpty() ? 0 : retained / results.size());
+                results.clear();
+            }
+
+            System.exit(0);
+        } catch(Exception e) {
+            logger.error("Error while measuring result footprint", e);
+            System.exit(1);
+        }
+    }
+
+
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        // a few collections, as a single one is not guaranteed to collect everything
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,61 @@
+package org.metaborg.spt.benchmark.scale;
+
+import java.util.List;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.collect.Lists;
+
+@Parameters(separators = "=")
+public class ScaleArguments {
+    @Parameter(names = { "--help", "-h" }, description = "Shows usage help", required = false,
+        help = true) public boolean help;
+
+
+    @Parameter(names = { "--lut", "-l" }, description = "Location of the language under test",
+        required = true) public String lutLocation;
+
+    @Parameter(names = { "--spt", "-s" }, description = "Location of the SPT language",
+        required = true) public String sptLocation;
+
+    @Parameter(names = { "--name", "-n" }, description = "Name of the language under test, as used in test suites",
+        required = true) public String languageName;
+
+    @Parameter(names = { "--snippet" }, description = "Text of the language under test to fill the fragments with",
+        required = true) public String snippet;
+
+    @Parameter(names = { "--work", "-w" }, description = "Directory in which the test suites are generated",
+        required = true) public String workLocation;
+
+
+    @Parameter(names = { "--start-symbol", "-start" }, description = "Start Symbol for the generated tests",
+        required = false) public String startSymbol;
+
+    @Parameter(names = { "--lang", "-ol" }, description = "Location of any other language that should be loaded",
+        required = false) public List<String> targetLanguageLocation = Lists.newLinkedList();
+
+    @Parameter(names = { "--sizes" }, description = "Comma separated numbers of tests to generate and run",
+        required = false) public String sizes = "10,1000,10000,100000";
+
+    @Parameter(names = { "--snippets" }, description = "Number of times the snippet is repeated in each fragment",
+        required = false) public int snippets = 10;
+
+    @Parameter(names = { "--selections" }, description = "Number of selections in each fragment",
+        required = false) public int selections = 2;
+
+    @Parameter(names = { "--tests-per-suite" }, description = "Maximum number of tests in a generated test suite",
+        required = false) public int testsPerSuite = 1000;
+
+    @Parameter(names = { "--warmup" }, description = "Number of unreported runs of the smallest size",
+        required = false) public int warmup = 1;
+
+    @Parameter(names = { "--jobs", "-j" }, description = "Number of test suites to run in parallel",
+        required = false) public int jobs = 1;
+
+    @Parameter(names = { "--test-jobs", "-tj" }, description = "Number of tests of a test suite to run in parallel",
+        required = false) public int testJobs = 1;
+
+    @Parameter(names = { "--prefetch" },
+        description = "Number of test suites to extract ahead of the suite that is being run, 0 to disable",
+        required = false) public int prefetch = 2;
+}
@@ -0,0 +1,147 @@
+package org.metaborg.spt.benchmark.scale;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.Selectors;
+import org.metaborg.core.resource.IResourceService;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spt.cmd.Module;
+import org.metaborg.spt.cmd.Runner;
+import org.metaborg.spt.core.SPTModule;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.common.collect.Lists;
+import com.google.inject.Injector;
+
+/**
+ * Generates test suites of increasing size with the {@link SuiteGenerator}, runs each of them with the command line
+ * {@link Runner}, and reports the wall time, throughput, peak heap usage and garbage collection time per size.
+ *
+ * The test result cache of the runner is disabled, so that every test is run.
+ */
+public class ScaleHarness {
+    private static final ILogger logger = LoggerUtils.logger(ScaleHarness.class);
+
+
+    public static void main(String[] args) {
+        final ScaleArguments arguments = new ScaleArguments();
+        final JCommander jc = new JCommander(arguments);
+
+        try {
+            jc.parse(args);
+        } catch(ParameterException e) {
+            logger.error("Could not parse parameters", e);
+            jc.usage();
+            System.exit(1);
+        }
+
+        if(arguments.help) {
+            jc.usage();
+            System.exit(0);
+        }
+
+        final List<Integer> sizes = Lists.newArrayList();
+        try {
+            for(String size : arguments.sizes.split(",")) {
+                sizes.add(Integer.parseInt(size.trim()));
+            }
+        } catch(NumberFormatException e) {
+            logger.error("Invalid sizes {}", arguments.sizes);
+            jc.usage();
+            System.exit(1);
+        }
+
+        try(final Spoofax spoofax = new Spoofax(new Module(), new SPTModule())) {
+            final Injector injector = spoofax.injector;
+            final IResourceService resourceService = injector.getInstance(IResourceService.class);
+            final Runner runner = injector.getInstance(Runner.class);
+            final SuiteGenerator generator = new SuiteGenerator(arguments.languageName, arguments.snippet,
+                arguments.snippets, arguments.selections, arguments.testsPerSuite);
+            final FileObject work = resourceService.resolve(arguments.workLocation);
+
+            final List<Measurement> measurements = Lists.newArrayList();
+            for(int i = 0; i < arguments.warmup + sizes.size(); i++) {
+                final int size = i < arguments.warmup ? sizes.get(0) : sizes.get(i - arguments.warmup);
+                final FileObject tests = work.resolveFile("tests-" + size);
+                tests.delete(Selectors.SELECT_ALL);
+                generator.generate(tests, size);
+
+                final Measurement measurement = new Measurement(size);
+                runner.run(arguments.sptLocation, arguments.lutLocation, arguments.targetLanguageLocation,
+                    tests.getName().getURI(), arguments.startSymbol, arguments.jobs, arguments.testJobs,
+                    arguments.prefetch, null, 0);
+                measurement.stop();
+                if(i >= arguments.warmup) {
+                    measurements.add(measurement);
+                }
+            }
+
+            logger.info("Fragments of {} snippets with {} selections, at most {} tests per suite", arguments.snippets,
+                arguments.selections, arguments.testsPerSuite);
+            logger.info(String.format("%10s %12s %12s %14s %12s", "tests", "time (ms)", "tests/s", "peak heap (MB)",
+                "GC (ms)"));
+            for(Measurement measurement : measurements) {
+                logger.info(measurement.toString());
+            }
+
+            System.exit(0);
+        } catch(Exception e) {
+            logger.error("Error while running scale tests", e);
+            System.exit(1);
+        }
+    }
+
+
+    private static class Measurement {
+        private final int tests;
+        private final long startTime;
+        private final long startGcTime;
+        private long time;
+        private long gcTime;
+        private long peakHeap;
+
+        public Measurement(int tests) {
+            this.tests = tests;
+            // start from a clean heap, so that the peak belongs to this run
+            System.gc();
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            this.startGcTime = gcTime();
+            this.startTime = System.nanoTime();
+        }
+
+        public void stop() {
+            time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            gcTime = gcTime() - startGcTime;
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType() == MemoryType.HEAP) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+        }
+
+        @Override public String toString() {
+            final double throughput = time == 0 ? 0 : tests * 1000.0 / time;
+            return String.format("%10d %12d %12.1f %14d %12d", tests, time, throughput, peakHeap / (1024 * 1024),
+                gcTime);
+        }
+
+        private static long gcTime() {
+            long total = 0;
+            for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+    }
+}
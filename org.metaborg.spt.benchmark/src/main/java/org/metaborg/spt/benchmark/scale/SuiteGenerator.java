@@ -0,0 +1,111 @@
+package org.metaborg.spt.benchmark.scale;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+import org.apache.commons.vfs2.FileObject;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * Generates SPT test suites of a given size, for measuring how SPT scales with the number and size of tests.
+ *
+ * Each test has a fragment that consists of a number of repetitions of a snippet of the language under test. The
+ * snippets are separated by newlines, and some of them are wrapped in a selection. The tests cycle through a fixed mix
+ * of expectations: parse, analysis message, origin and, if the fragments have selections, reference resolution
+ * expectations. The generated suites are valid SPT, but whether the tests pass depends on the snippet and the
+ * language.
+ */
+public class SuiteGenerator {
+    private final String language;
+    private final String snippet;
+    private final int snippets;
+    private final int selections;
+    private final int testsPerSuite;
+
+
+    /**
+     * @param language
+     *            the name of the language under test.
+     * @param snippet
+     *            the text that is repeated to form the fragments. Should not contain the '[[' and ']]' markers.
+     * @param snippets
+     *            the number of times the snippet is repeated in a fragment.
+     * @param selections
+     *            the number of snippets in each fragment that are selected. At most the number of snippets.
+     * @param testsPerSuite
+     *            the maximum number of tests in a single test suite.
+     */
+    public SuiteGenerator(String language, String snippet, int snippets, int selections, int testsPerSuite) {
+        this.language = language;
+        this.snippet = snippet;
+        this.snippets = Math.max(1, snippets);
+        this.selections = Math.max(0, Math.min(selections, this.snippets));
+        this.testsPerSuite = Math.max(1, testsPerSuite);
+    }
+
+    /**
+     * Generate test suites with the given total number of tests in the given directory.
+     *
+     * @return the generated test suites.
+     */
+    public List<FileObject> generate(FileObject directory, int tests) throws IOException {
+        directory.createFolder();
+        final String fragment = fragment();
+        final List<String> expectations = expectations();
+        final List<FileObject> suites = Lists.newArrayList();
+        for(int first = 0; first < tests; first += testsPerSuite) {
+            final int suiteNumber = suites.size();
+            final FileObject suite = directory.resolveFile("suite" + suiteNumber + ".spt");
+            try(OutputStream out = suite.getContent().getOutputStream();
+                Writer writer = new OutputStreamWriter(out, Charsets.UTF_8)) {
+                writer.write("module suite" + suiteNumber + "\n");
+                writer.write("language " + language + "\n");
+                final int last = Math.min(tests, first + testsPerSuite);
+                for(int i = first; i < last; i++) {
+                    writer.write("\ntest generated test " + i + " [[\n");
+                    writer.write(fragment);
+                    writer.write("]] ");
+                    writer.write(expectations.get(i % expectations.size()));
+                    writer.write("\n");
+                }
+            }
+            suites.add(suite);
+        }
+        return suites;
+    }
+
+
+    private String fragment() {
+        final StringBuilder sb = new StringBuilder();
+        // spread the selections evenly over the snippets
+        final int stride = selections == 0 ? 0 : snippets / selections;
+        int selected = 0;
+        for(int i = 0; i < snippets; i++) {
+            if(selected < selections && i % stride == 0) {
+                sb.append("[[").append(snippet).append("]]");
+                selected++;
+            } else {
+                sb.append(snippet);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private List<String> expectations() {
+        final List<String> expectations = Lists.newArrayList("parse succeeds", "0 errors", "0 warnings",
+            "has origin locations", "parse fails");
+        if(selections >= 1) {
+            expectations.add("resolve #1");
+        }
+        if(selections >= 2) {
+            expectations.add("resolve #1 to #2");
+        }
+        return expectations;
+    }
+}
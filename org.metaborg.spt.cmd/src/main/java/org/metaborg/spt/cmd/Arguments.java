@@ -28,6 +28,83 @@ public class Arguments {
     @Parameter(names = { "--lang", "-ol" }, description = "Location of any other language that should be loaded",
         required = false) public List<String> targetLanguageLocation = Lists.newLinkedList();
 
+    @Parameter(names = { "--jobs", "-j" }, description = "Number of test suites to run in parallel",
+        required = false) public int jobs = 1;
+
+    @Parameter(names = { "--test-jobs", "-tj" }, description = "Number of tests of a test suite to run in parallel",
+        required = false) public int testJobs = 1;
+
+    @Parameter(names = { "--prefetch" },
+        description = "Number of test suites to extract ahead of the suite that is being run, 0 to disable",
+        required = false) public int prefetch = 2;
+
+    @Parameter(names = { "--runtime-pool" },
+        description = "Experimental: number of idle Stratego runtimes to keep per language for reuse between tests, "
+            + "0 to disable. Dynamic rules are reset between tests, other runtime state is not",
+        required = false) public int runtimePool = 0;
+
+    @Parameter(names = { "--parse-cache" }, description = "Number of fragment parse results to cache, 0 to disable",
+        required = false) public int parseCache = 1024;
+
+    @Parameter(names = { "--context-sharing" },
+        description = "Whether tests share analysis contexts: never, reset (reuse after resetting), or shared",
+        required = false) public String contextSharing = "reset";
+
+    @Parameter(names = { "--cache-dir" },
+        description = "Location of the test result cache, relative to the location of the test files",
+        required = false) public String cacheDir = ".spt-cache";
+
+    @Parameter(names = { "--no-cache" },
+        description = "Run all tests, instead of reusing the results of unchanged tests",
+        required = false) public boolean noCache;
+
+    @Parameter(names = { "--lean-results" },
+        description = "Drop the parse and analysis results of each test once it is evaluated. Cached results of such "
+            + "tests are invalidated by any grammar change",
+        required = false) public boolean leanResults;
+
+    @Parameter(names = { "--skip-spt-analysis" },
+        description = "Desugar test suites directly instead of analyzing them with the SPT language",
+        required = false) public boolean skipSptAnalysis;
+
+    @Parameter(names = { "--test-timeout" },
+        description = "Maximum time in milliseconds that a test may take before it fails, 0 for no limit",
+        required = false) public long testTimeout = 0;
+
+    @Parameter(names = { "--phase-timeout" },
+        description = "Maximum time in milliseconds that parsing, analysis or evaluation of an expectation may take "
+            + "before the test fails, 0 for no limit",
+        required = false) public long phaseTimeout = 0;
+
+    @Parameter(names = { "--report-slowest" },
+        description = "Number of slowest tests and phases to report when all tests are done, 0 to disable",
+        required = false) public int reportSlowest = 0;
+
+    @Parameter(names = { "--trace" },
+        description = "File to write a trace of extraction, parsing, analysis and evaluation to, in Trace Event Format",
+        required = false) public String trace;
+
+    @Parameter(names = { "--report" },
+        description = "Write results as each test finishes: junit=<file> for JUnit XML, jsonl=<file> for JSON lines",
+        required = false) public List<String> reports = Lists.newLinkedList();
+
+    @Parameter(names = { "--workers" },
+        description = "Number of worker processes to run test suites in, each loading the languages once, "
+            + "0 to run all test suites in this process",
+        required = false) public int workers = 0;
+
+    @Parameter(names = { "--worker-max-tests" },
+        description = "Number of tests after which a worker process is replaced by a new one, 0 for no limit",
+        required = false) public int workerMaxTests = 0;
+
+    @Parameter(names = { "--worker-max-heap" },
+        description = "Used heap size in megabytes above which a worker process is replaced by a new one after its "
+            + "current test suite, 0 for no limit",
+        required = false) public long workerMaxHeap = 0;
+
+    @Parameter(names = { "--worker" }, description = "Run test suites that are read from standard input",
+        hidden = true) public boolean worker;
+
 
     @Parameter(names = { "--exit" }, description = "Immediately exit, used for testing purposes",
         hidden = true) public boolean exit;
@@ -0,0 +1,84 @@
+package org.metaborg.spt.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+
+/**
+ * Writes test results in the JUnit XML format.
+ *
+ * All tests are written to a single testsuite element, with the test suite file as the class name of each test case.
+ * This keeps the report valid when test suites run in parallel and their results are interleaved, and means the
+ * report does not need the number of tests up front.
+ *
+ * A test of which the result was reused from an earlier run has no time, and a {@code cached} property instead.
+ */
+public class JUnitReporter extends StreamingReporter {
+    private static final String CACHED = "<properties><property name=\"cached\" value=\"true\"/></properties>";
+
+    public JUnitReporter(File file) throws IOException {
+        super(file);
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n<testsuite name=\"spt\">\n");
+    }
+
+    @Override protected String test(ISpoofaxTestResult result) {
+        final StringBuilder sb = new StringBuilder("  <testcase classname=\"");
+        final FileObject resource = result.getTest().getResource();
+        escape(resource == null ? "" : resource.getName().getBaseName(), sb);
+        sb.append("\" name=\"");
+        escape(result.getTest().getDescription(), sb);
+        sb.append("\"");
+        if(!isCached(result)) {
+            sb.append(" time=\"").append(String.format(Locale.ROOT, "%.6f", seconds(result))).append("\"");
+            if(result.isSuccessful()) {
+                return sb.append("/>\n").toString();
+            }
+            sb.append(">\n");
+        } else {
+            sb.append(">\n    ").append(CACHED).append('\n');
+            if(result.isSuccessful()) {
+                return sb.append("  </testcase>\n").toString();
+            }
+        }
+        sb.append("    <failure message=\"Test failed\">");
+        for(IMessage m : result.getAllMessages()) {
+            escape(describe(m), sb);
+            sb.append('\n');
+        }
+        return sb.append("</failure>\n  </testcase>\n").toString();
+    }
+
+    @Override protected String end() {
+        return "</testsuite>\n</testsuites>\n";
+    }
+
+
+    private static void escape(String s, StringBuilder sb) {
+        for(int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch(c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    // characters that are not allowed in XML 1.0 are dropped
+                    if(c >= 0x20 || c == '\n' || c == '\r' || c == '\t') {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.metaborg.spt.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+
+/**
+ * Writes one JSON object per line for each test result.
+ *
+ * Each object has the test suite, the test description, whether the test passed, whether its result was reused from an
+ * earlier run, the time it took in seconds or null if it was not run, and its messages with their severity and, if they
+ * have one, their region.
+ */
+public class JsonLinesReporter extends StreamingReporter {
+    public JsonLinesReporter(File file) throws IOException {
+        super(file);
+    }
+
+    @Override protected String test(ISpoofaxTestResult result) {
+        final StringBuilder sb = new StringBuilder("{\"suite\":");
+        final FileObject resource = result.getTest().getResource();
+        JsonUtil.quote(resource == null ? "" : resource.getName().getURI(), sb);
+        sb.append(",\"test\":");
+        JsonUtil.quote(result.getTest().getDescription(), sb);
+        sb.append(",\"success\":").append(result.isSuccessful());
+        sb.append(",\"cached\":").append(isCached(result));
+        sb.append(",\"time\":").append(isCached(result) ? "null" : String.format(Locale.ROOT, "%.6f", seconds(result)));
+        sb.append(",\"messages\":[");
+        boolean first = true;
+        for(IMessage m : result.getAllMessages()) {
+            if(!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"severity\":");
+            JsonUtil.quote(m.severity().toString(), sb);
+            sb.append(",\"message\":");
+            JsonUtil.quote(m.message(), sb);
+            if(m.region() != null) {
+                sb.append(",\"start\":").append(m.region().startOffset());
+                sb.append(",\"end\":").append(m.region().endOffset());
+            }
+            sb.append('}');
+        }
+        return sb.append("]}\n").toString();
+    }
+
+    @Override protected String end() {
+        return null;
+    }
+}
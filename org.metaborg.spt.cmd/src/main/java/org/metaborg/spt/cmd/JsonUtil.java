@@ -0,0 +1,40 @@
+package org.metaborg.spt.cmd;
+
+/**
+ * Helpers for writing JSON by hand.
+ */
+public class JsonUtil {
+    /**
+     * Append the given string to the given builder as a quoted and escaped JSON string.
+     */
+    public static void quote(String s, StringBuilder sb) {
+        sb.append('"');
+        for(int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch(c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
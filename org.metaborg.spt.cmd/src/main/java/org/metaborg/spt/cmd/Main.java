@@ -1,12 +1,28 @@
 package org.metaborg.spt.cmd;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.metaborg.mbt.core.run.ContextPool;
+import org.metaborg.mbt.core.run.ContextSharingPolicy;
+import org.metaborg.mbt.core.run.TestTracer;
+import org.metaborg.mbt.core.run.TestWatchdog;
 import org.metaborg.spoofax.core.Spoofax;
 import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.extract.SpoofaxTestCaseExtractor;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
+import org.metaborg.spt.core.run.StrategoRuntimePool;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
 import com.google.inject.Injector;
 
 public class Main {
@@ -35,15 +51,93 @@ public class Main {
             System.exit(0);
         }
 
+        final ContextSharingPolicy contextSharing;
+        try {
+            contextSharing = ContextSharingPolicy.valueOf(arguments.contextSharing.toUpperCase());
+        } catch(IllegalArgumentException e) {
+            logger.error("Unknown context sharing policy {}", arguments.contextSharing);
+            jc.usage();
+            System.exit(1);
+            return;
+        }
+
+        if(arguments.workers > 0 && !arguments.worker) {
+            try {
+                new WorkerPool(workerArguments(args), arguments.workers).run(arguments.testsLocation);
+                System.exit(0);
+            } catch(Exception e) {
+                logger.error("Error while running tests", e);
+                System.exit(1);
+            }
+        }
+
+        final List<StreamingReporter> reporters = Lists.newArrayList();
+        try {
+            for(String report : arguments.reports) {
+                final int separator = report.indexOf('=');
+                final String format = separator < 0 ? report : report.substring(0, separator);
+                final File file = separator < 0 ? null : new File(report.substring(separator + 1));
+                if("junit".equals(format) && file != null) {
+                    reporters.add(new JUnitReporter(file));
+                } else if("jsonl".equals(format) && file != null) {
+                    reporters.add(new JsonLinesReporter(file));
+                } else {
+                    logger.error("Unknown report {}, expected junit=<file> or jsonl=<file>", report);
+                    jc.usage();
+                    System.exit(1);
+                }
+            }
+        } catch(IOException e) {
+            logger.error("Unable to create report", e);
+            System.exit(1);
+        }
+
         final Module module = new Module();
         try(final Spoofax spoofax = new Spoofax(module, new SPTModule())) {
 
             final Injector injector = spoofax.injector;
 
+            injector.getInstance(SpoofaxRelocatingFragmentParser.class).setCacheSize(arguments.parseCache);
+            injector.getInstance(StrategoRuntimePool.class).setMaxIdle(arguments.runtimePool);
+            injector.getInstance(SpoofaxTestCaseRunner.class).setLeanResults(arguments.leanResults);
+            injector.getInstance(SpoofaxTestCaseExtractor.class).setSkipAnalysis(arguments.skipSptAnalysis);
+            final TestWatchdog watchdog = injector.getInstance(TestWatchdog.class);
+            watchdog.setTestTimeout(arguments.testTimeout);
+            watchdog.setPhaseTimeout(arguments.phaseTimeout);
+            final ContextPool contextPool = injector.getInstance(ContextPool.class);
+            contextPool.setPolicy(contextSharing);
             final Runner runner = injector.getInstance(Runner.class);
+            // the parser does not respond to interrupts, so it has to stop by itself
+            runner.setParseTimeout((int) Math.min(Integer.MAX_VALUE, arguments.phaseTimeout));
+            for(StreamingReporter reporter : reporters) {
+                runner.addListener(reporter);
+            }
 
-            runner.run(arguments.sptLocation, arguments.lutLocation, arguments.targetLanguageLocation,
-                arguments.testsLocation, arguments.startSymbol);
+            final TestTracer tracer = injector.getInstance(TestTracer.class);
+            final TraceFile traceFile = arguments.trace == null ? null : new TraceFile(new File(arguments.trace));
+            tracer.setSink(traceFile);
+            try {
+                if(arguments.worker) {
+                    final BufferedReader in = new BufferedReader(new InputStreamReader(System.in, Charsets.UTF_8));
+                    runner.serve(arguments.sptLocation, arguments.lutLocation, arguments.targetLanguageLocation,
+                        arguments.testsLocation, arguments.startSymbol, arguments.testJobs, arguments.reportSlowest,
+                        in, System.out, arguments.workerMaxTests, arguments.workerMaxHeap * 1024 * 1024);
+                } else {
+                    runner.run(arguments.sptLocation, arguments.lutLocation, arguments.targetLanguageLocation,
+                        arguments.testsLocation, arguments.startSymbol, arguments.jobs, arguments.testJobs,
+                        arguments.prefetch, arguments.noCache ? null : arguments.cacheDir, arguments.reportSlowest);
+                }
+            } finally {
+                tracer.setSink(null);
+                if(traceFile != null) {
+                    traceFile.close();
+                }
+                for(StreamingReporter reporter : reporters) {
+                    runner.removeListener(reporter);
+                    reporter.close();
+                }
+            }
+            contextPool.clear();
 
             System.exit(0);
 
@@ -52,4 +146,35 @@ public class Main {
             System.exit(1);
         }
     }
+
+    /**
+     * The arguments of this process, without the options that only apply to the process that runs the workers.
+     */
+    private static List<String> workerArguments(String[] args) {
+        final List<String> workerArgs = Lists.newArrayList();
+        for(int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            final int separator = arg.indexOf('=');
+            final String option = separator < 0 ? arg : arg.substring(0, separator);
+            if(!option.equals("--workers") && !option.equals("--report") && !option.equals("--trace")) {
+                workerArgs.add(arg);
+                continue;
+            }
+            // the value is either after the separator, or the next argument
+            final String value;
+            if(separator >= 0) {
+                value = arg.substring(separator + 1);
+            } else if(i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                value = "";
+            }
+            // workers would overwrite each others reports and traces
+            if(!option.equals("--workers")) {
+                logger.warn("Ignoring {} {}, reports and traces are not supported when running tests in workers",
+                    option, value);
+            }
+        }
+        return workerArgs;
+    }
 }
@@ -0,0 +1,292 @@
+package org.metaborg.spt.cmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoInt;
+import org.spoofax.interpreter.terms.IStrategoString;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.terms.Term;
+import org.spoofax.terms.io.binary.TermReader;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A summary of an SDF parse table, used to find out which constructors are affected by a change to the grammar.
+ *
+ * For each constructor, it holds a hash of the productions for that constructor and the sorts that these productions
+ * define. Everything else in the table that can influence parsing, like productions without a constructor and
+ * priorities, is summarized in a single global hash. Label numbers are replaced by the productions they refer to, as
+ * these numbers change with every change to the grammar.
+ *
+ * Follow restrictions and reject productions are not visible in the productions, only in the reduce actions of the
+ * states. The lookahead and status of the reduce actions of each production are therefore hashed together with the
+ * production, so that a change to them only affects the constructor of that production. The states are also hashed
+ * as a whole. When they changed in a way that none of the productions show, all constructors are considered
+ * affected.
+ */
+public class ParseTableSignature {
+    private final String global;
+    private final @Nullable String states;
+    private final Map<String, String> constructors;
+    private final SetMultimap<String, String> sorts;
+
+
+    private ParseTableSignature(String global, @Nullable String states, Map<String, String> constructors,
+        SetMultimap<String, String> sorts) {
+        this.global = global;
+        this.states = states;
+        this.constructors = constructors;
+        this.sorts = sorts;
+    }
+
+    /**
+     * Compute the signature of the given parse table.
+     *
+     * @return the signature, or null if the parse table could not be read.
+     */
+    public static @Nullable ParseTableSignature of(FileObject parseTable, ITermFactory termFactory) {
+        final IStrategoTerm table;
+        try(InputStream in = parseTable.getContent().getInputStream()) {
+            table = new TermReader(termFactory).parseFromStream(in);
+        } catch(IOException e) {
+            return null;
+        }
+        // parse-table(version, initial-state, labels([label(prod, number), ...]), states(...), priorities([...]))
+        if(!Term.isTermAppl(table) || !"parse-table".equals(((IStrategoAppl) table).getName())
+            || table.getSubtermCount() != 5) {
+            return null;
+        }
+        try {
+            return of(table);
+        } catch(RuntimeException e) {
+            // not the kind of table we expected
+            return null;
+        }
+    }
+
+    private static ParseTableSignature of(IStrategoTerm table) {
+        final Map<Integer, String> labels = Maps.newHashMap();
+        for(IStrategoTerm label : table.getSubterm(2).getSubterm(0).getAllSubterms()) {
+            labels.put(Term.asJavaInt(label.getSubterm(1)), label.getSubterm(0).toString());
+        }
+        final List<String> global = Lists.newArrayList();
+        final SetMultimap<String, String> reductions = HashMultimap.create();
+        addReductions(table.getSubterm(3), labels, reductions, global);
+
+        final Map<String, List<String>> productions = Maps.newHashMap();
+        final SetMultimap<String, String> sorts = HashMultimap.create();
+        for(IStrategoTerm label : table.getSubterm(2).getSubterm(0).getAllSubterms()) {
+            final IStrategoTerm prod = label.getSubterm(0);
+            final String prodString = prod.toString();
+            // follow restrictions and rejects of the production are in its reduce actions
+            final List<String> prodStrings = Lists.newArrayList(reductions.get(prodString));
+            Collections.sort(prodStrings);
+            prodStrings.add(0, prodString);
+            final String cons = findCons(prod);
+            if(cons == null) {
+                global.addAll(prodStrings);
+            } else {
+                List<String> consProductions = productions.get(cons);
+                if(consProductions == null) {
+                    consProductions = Lists.newArrayList();
+                    productions.put(cons, consProductions);
+                }
+                consProductions.add(prodStrings.toString());
+                sorts.put(cons, prod.getSubterm(1).toString());
+            }
+        }
+
+        // priorities refer to productions by the first and last argument, e.g. arg-gtr-prio(label, arg, label)
+        for(IStrategoTerm priority : table.getSubterm(4).getSubterm(0).getAllSubterms()) {
+            final StringBuilder sb = new StringBuilder(((IStrategoAppl) priority).getName());
+            final int count = priority.getSubtermCount();
+            for(int i = 0; i < count; i++) {
+                final IStrategoTerm arg = priority.getSubterm(i);
+                sb.append(i == 0 ? '(' : ',');
+                if((i == 0 || i == count - 1) && arg instanceof IStrategoInt) {
+                    sb.append(labels.get(((IStrategoInt) arg).intValue()));
+                } else {
+                    sb.append(arg);
+                }
+            }
+            global.add(sb.append(')').toString());
+        }
+
+        final Map<String, String> constructors = Maps.newHashMap();
+        for(Map.Entry<String, List<String>> entry : productions.entrySet()) {
+            constructors.put(entry.getKey(), hash(entry.getValue()));
+        }
+        final String states = hash(Lists.newArrayList(table.getSubterm(1).toString(), table.getSubterm(3).toString()));
+        return new ParseTableSignature(hash(global), states, constructors, sorts);
+    }
+
+    /**
+     * Get the constructors that may be parsed differently with the grammar of the other signature.
+     *
+     * These are the constructors of which the productions changed, and all constructors of the sorts of those
+     * productions, as a changed production may now accept text that was parsed to another constructor of the same
+     * sort.
+     *
+     * @return the affected constructors, or null if the grammar changed in a way that may affect all constructors.
+     */
+    public @Nullable Set<String> affectedConstructors(ParseTableSignature other) {
+        if(!global.equals(other.global)) {
+            return null;
+        }
+
+        final Set<String> changed = Sets.newHashSet();
+        for(String cons : Sets.union(constructors.keySet(), other.constructors.keySet())) {
+            if(!constructors.containsKey(cons) || !constructors.get(cons).equals(other.constructors.get(cons))) {
+                changed.add(cons);
+            }
+        }
+        if(changed.isEmpty() && (states == null || !states.equals(other.states))) {
+            // the table changed in a way that the productions do not show
+            return null;
+        }
+        final Set<String> changedSorts = Sets.newHashSet();
+        for(String cons : changed) {
+            changedSorts.addAll(sorts.get(cons));
+            changedSorts.addAll(other.sorts.get(cons));
+        }
+        final Set<String> affected = Sets.newHashSet(changed);
+        for(ParseTableSignature signature : new ParseTableSignature[] { this, other }) {
+            for(Map.Entry<String, String> entry : signature.sorts.entries()) {
+                if(changedSorts.contains(entry.getValue())) {
+                    affected.add(entry.getKey());
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Read a signature that was written with {@link #write(FileObject)}.
+     *
+     * @return the signature, or null if there is none.
+     */
+    public static @Nullable ParseTableSignature read(FileObject file) throws IOException {
+        if(!file.exists()) {
+            return null;
+        }
+        final List<String> lines;
+        try(InputStream in = file.getContent().getInputStream()) {
+            lines = IOUtils.readLines(in, Charsets.UTF_8);
+        }
+        String global = null;
+        String states = null;
+        final Map<String, String> constructors = Maps.newHashMap();
+        final SetMultimap<String, String> sorts = HashMultimap.create();
+        for(String line : lines) {
+            final String[] parts = line.split("\t", 3);
+            if(parts[0].equals("global") && parts.length == 2) {
+                global = parts[1];
+            } else if(parts[0].equals("states") && parts.length == 2) {
+                states = parts[1];
+            } else if(parts[0].equals("cons") && parts.length == 3) {
+                constructors.put(parts[1], parts[2]);
+            } else if(parts[0].equals("sort") && parts.length == 3) {
+                sorts.put(parts[1], parts[2]);
+            }
+        }
+        return global == null ? null : new ParseTableSignature(global, states, constructors, sorts);
+    }
+
+    /**
+     * Write this signature to the given file.
+     */
+    public void write(FileObject file) throws IOException {
+        final List<String> lines = Lists.newArrayList();
+        lines.add("global\t" + global);
+        lines.add("states\t" + states);
+        for(Map.Entry<String, String> entry : constructors.entrySet()) {
+            lines.add("cons\t" + entry.getKey() + "\t" + entry.getValue());
+        }
+        for(Map.Entry<String, String> entry : sorts.entries()) {
+            lines.add("sort\t" + entry.getKey() + "\t" + entry.getValue());
+        }
+        try(OutputStream out = file.getContent().getOutputStream()) {
+            IOUtils.writeLines(lines, "\n", out, Charsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * Add the status and lookahead of all reduce actions in the given part of the states to the production that they
+     * reduce with.
+     *
+     * An action reduce(arity, label, status) or reduce(arity, label, status, lookahead) occurs in every state in which
+     * the production can be reduced, so each distinct action is added once. Actions of unknown productions are added
+     * to the global part of the signature.
+     */
+    private static void addReductions(IStrategoTerm term, Map<Integer, String> labels,
+        SetMultimap<String, String> reductions, List<String> global) {
+        if(Term.isTermAppl(term) && "reduce".equals(((IStrategoAppl) term).getName())
+            && term.getSubtermCount() >= 3) {
+            final StringBuilder sb = new StringBuilder();
+            for(int i = 2; i < term.getSubtermCount(); i++) {
+                sb.append(term.getSubterm(i)).append(';');
+            }
+            final IStrategoTerm label = term.getSubterm(1);
+            final String prod = label instanceof IStrategoInt ? labels.get(((IStrategoInt) label).intValue()) : null;
+            if(prod == null) {
+                global.add(term.toString());
+            } else {
+                reductions.put(prod, sb.toString());
+            }
+            return;
+        }
+        for(int i = 0; i < term.getSubtermCount(); i++) {
+            addReductions(term.getSubterm(i), labels, reductions, global);
+        }
+    }
+
+    private static @Nullable String findCons(IStrategoTerm prod) {
+        // prod(lhs, rhs, attrs([..., term(cons("Name")), ...]))
+        final IStrategoTerm attrs = prod.getSubterm(2);
+        if(attrs.getSubtermCount() == 0) {
+            return null;
+        }
+        for(IStrategoTerm attr : attrs.getSubterm(0).getAllSubterms()) {
+            if(Term.isTermAppl(attr) && "term".equals(((IStrategoAppl) attr).getName())) {
+                final IStrategoTerm cons = attr.getSubterm(0);
+                if(Term.isTermAppl(cons) && "cons".equals(((IStrategoAppl) cons).getName())
+                    && cons.getSubterm(0) instanceof IStrategoString) {
+                    return ((IStrategoString) cons.getSubterm(0)).stringValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String hash(List<String> strings) {
+        // the order of the productions in the table does not matter
+        final List<String> sorted = Lists.newArrayList(strings);
+        Collections.sort(sorted);
+        final Hasher hasher = Hashing.sha1().newHasher();
+        for(String s : sorted) {
+            hasher.putString(s, Charsets.UTF_8);
+            hasher.putChar('\n');
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -1,12 +1,27 @@
 package org.metaborg.spt.cmd;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.language.ILanguageComponent;
 import org.metaborg.core.language.ILanguageDiscoveryService;
@@ -17,20 +32,29 @@ import org.metaborg.core.project.IProject;
 import org.metaborg.core.project.ISimpleProjectService;
 import org.metaborg.core.resource.IResourceService;
 import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.mbt.core.run.ContextPool;
 import org.metaborg.spoofax.core.syntax.JSGLRParserConfiguration;
+import org.metaborg.spoofax.core.syntax.SyntaxFacet;
+import org.metaborg.spoofax.core.terms.ITermFactoryService;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
 import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractionResult;
 import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractor;
+import org.metaborg.spt.core.run.ISpoofaxFragmentParser;
 import org.metaborg.spt.core.run.ISpoofaxFragmentParserConfig;
-import org.metaborg.spt.core.run.ISpoofaxTestCaseRunner;
+import org.metaborg.spt.core.run.ISpoofaxTestListener;
 import org.metaborg.spt.core.run.ISpoofaxTestResult;
 import org.metaborg.spt.core.run.SpoofaxFragmentParserConfig;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.metaborg.util.resource.FileSelectorUtils;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 
 public class Runner {
@@ -41,12 +65,19 @@ public class Runner {
     private final ILanguageDiscoveryService languageDiscoveryService;
     private final ISpoofaxInputUnitService inputService;
     private final ISpoofaxTestCaseExtractor extractor;
-    private final ISpoofaxTestCaseRunner executor;
+    private final SpoofaxTestCaseRunner executor;
+    private final ISpoofaxFragmentParser fragmentParser;
+    private final ITermFactoryService termFactoryService;
+    private final ContextPool contextPool;
+
+    private final TestListeners listeners = new TestListeners();
 
+    private volatile int parseTimeout = 0;
 
     @Inject public Runner(IResourceService resourceService, ISimpleProjectService projectService,
         ILanguageDiscoveryService languageDiscoveryService, ISpoofaxInputUnitService inputService,
-        ISpoofaxTestCaseExtractor extractor, ISpoofaxTestCaseRunner executor) {
+        ISpoofaxTestCaseExtractor extractor, SpoofaxTestCaseRunner executor, ISpoofaxFragmentParser fragmentParser,
+        ITermFactoryService termFactoryService, ContextPool contextPool) {
         this.resourceService = resourceService;
         this.projectService = projectService;
 
@@ -54,11 +85,173 @@ public class Runner {
         this.inputService = inputService;
         this.extractor = extractor;
         this.executor = executor;
+        this.fragmentParser = fragmentParser;
+        this.termFactoryService = termFactoryService;
+        this.contextPool = contextPool;
+    }
+
+
+    /**
+     * Set the timeout of the parser for the fragments of the language under test.
+     *
+     * The parser stops once it takes longer, so that a phase timeout of the {@link TestWatchdog} does not leave a
+     * parse running in the background.
+     *
+     * @param millis
+     *            the timeout in milliseconds, or 0 for the default timeout of the parser.
+     */
+    public void setParseTimeout(int millis) {
+        this.parseTimeout = millis;
+    }
+
+    /**
+     * Add a listener that receives the progress of the test runs.
+     *
+     * Events are delivered one at a time, so listeners do not have to be thread-safe. However, when test suites run in
+     * parallel, the events of different test suites are interleaved. Tests that did not change and have a cached result
+     * are reported with a result that only has the cached success and messages.
+     */
+    public void addListener(ISpoofaxTestListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ISpoofaxTestListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Run all test suites at the given location.
+     * 
+     * @param jobs
+     *            the number of test suites to run in parallel. All suites share the same Spoofax instance. The output
+     *            of each suite is logged as a whole, in the order in which the suites were found.
+     * @param testJobs
+     *            the number of tests of a single test suite to run in parallel.
+     * @param prefetch
+     *            when running the test suites one after another, the number of test suites that are read and extracted
+     *            ahead of the suite that is being run. If 0, each suite is extracted right before it is run.
+     * @param cachePath
+     *            the location of the test result cache, relative to the tests location. Tests that did not change
+     *            since they were cached, with the same languages, are not run again. If null, the cache is not used.
+     * @param slowest
+     *            the number of slowest tests and phases to report when all tests are done. If 0, nothing is reported.
+     */
+    public void run(String sptPath, String lutPath, List<String> languagePaths, String testsPath, String startSymbol,
+        int jobs, int testJobs, int prefetch, @Nullable String cachePath, int slowest)
+        throws MetaborgException, IOException {
+        final Session session =
+            open(sptPath, lutPath, languagePaths, testsPath, startSymbol, testJobs, cachePath, slowest);
+        final IProject project = session.project;
+        final ILanguageImpl spt = session.spt;
+        final ILanguageImpl lut = session.lut;
+        final ISpoofaxFragmentParserConfig fragmentConfig = session.fragmentConfig;
+        final ExecutorService testPool = session.testPool;
+        final TestResultCache resultCache = session.resultCache;
+        final TimingReport timingReport = session.timingReport;
+        try {
+            final List<FileObject> testSuites =
+                Lists.newArrayList(project.location().findFiles(FileSelectorUtils.extension("spt")));
+            if(jobs <= 1 && prefetch > 0) {
+                runPipelined(testSuites, project, spt, lut, fragmentConfig, testsPath, prefetch, testPool, resultCache,
+                    timingReport);
+            } else if(jobs <= 1) {
+                for(FileObject testSuite : testSuites) {
+                    runSuite(testSuite, project, spt, lut, fragmentConfig, testsPath, testPool, resultCache,
+                        timingReport).replay(logger);
+                }
+            } else {
+                runSuites(testSuites, project, spt, lut, fragmentConfig, testsPath, jobs, testPool, resultCache,
+                    timingReport);
+            }
+
+            if(fragmentParser instanceof SpoofaxRelocatingFragmentParser) {
+                final CacheStats stats = ((SpoofaxRelocatingFragmentParser) fragmentParser).cacheStats();
+                logger.info("Fragment parse cache: {} hits, {} misses", stats.hitCount(), stats.missCount());
+            }
+            if(timingReport != null) {
+                timingReport.log(logger);
+            }
+        } finally {
+            close(session);
+        }
     }
 
+    /**
+     * Run the test suites that a {@link WorkerPool} sends to this process, until it closes the input or until this
+     * worker should be recycled.
+     *
+     * The languages are loaded once, before the first test suite is read. Each line of the input is the location of a
+     * test suite. After each suite, a protocol line with the number of tests and failed tests is written to the
+     * output, preceded by a line that announces that the worker stops if it ran too many tests or uses too much heap.
+     * See {@link WorkerPool}.
+     *
+     * @param maxTests
+     *            the number of tests after which the worker stops, so that the pool replaces it. 0 for no limit.
+     * @param maxHeap
+     *            the used heap size in bytes above which the worker stops after a suite. 0 for no limit.
+     */
+    public void serve(String sptPath, String lutPath, List<String> languagePaths, String testsPath,
+        String startSymbol, int testJobs, int slowest, BufferedReader in, PrintStream out, int maxTests, long maxHeap)
+        throws MetaborgException, IOException {
+        final Session session = open(sptPath, lutPath, languagePaths, testsPath, startSymbol, testJobs, null, slowest);
+        final int[] counts = new int[2];
+        final ISpoofaxTestListener counter = new ISpoofaxTestListener() {
+            @Override public void suiteStarted(FileObject testSuite) {
+            }
+
+            @Override public void testStarted(ITestCase test) {
+            }
+
+            @Override public void testFinished(ISpoofaxTestResult result) {
+                counts[0]++;
+                if(!result.isSuccessful()) {
+                    counts[1]++;
+                }
+            }
+
+            @Override public void suiteFinished(FileObject testSuite) {
+            }
+        };
+        addListener(counter);
+        try {
+            out.println(WorkerPool.READY);
+            out.flush();
+            int tests = 0;
+            String line;
+            while((line = in.readLine()) != null) {
+                final FileObject testSuite = resourceService.resolve(line);
+                counts[0] = 0;
+                counts[1] = 0;
+                runSuite(testSuite, session.project, session.spt, session.lut, session.fragmentConfig, testsPath,
+                    session.testPool, null, session.timingReport).replay(logger);
+                tests += counts[0];
+                final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+                final boolean recycle = maxTests > 0 && tests >= maxTests || maxHeap > 0 && heap.getUsed() >= maxHeap;
+                if(recycle) {
+                    logger.info("Worker ran {} tests and uses {} bytes of heap, recycling it", tests, heap.getUsed());
+                    out.println(WorkerPool.RECYCLE);
+                }
+                out.println(WorkerPool.DONE + counts[0] + " " + counts[1]);
+                out.flush();
+                if(recycle) {
+                    break;
+                }
+            }
+            if(session.timingReport != null) {
+                session.timingReport.log(logger);
+            }
+        } finally {
+            removeListener(counter);
+            close(session);
+        }
+    }
 
-    public void run(String sptPath, String lutPath, List<String> languagePaths, String testsPath, String startSymbol)
-        throws MetaborgException, FileSystemException {
+    /**
+     * Load the languages and create the project for a run of the tests at the given location.
+     */
+    private Session open(String sptPath, String lutPath, List<String> languagePaths, String testsPath,
+        String startSymbol, int testJobs, @Nullable String cachePath, int slowest)
+        throws MetaborgException, IOException {
         final FileObject sptLocation = resourceService.resolve(sptPath);
         final FileObject lutLocation = resourceService.resolve(lutPath);
         final List<FileObject> languageLocations = Lists.newLinkedList();
@@ -67,77 +260,321 @@ public class Runner {
         }
         final FileObject testsLocation = resourceService.resolve(testsPath);
         final IProject project = projectService.create(testsLocation);
+        final ExecutorService testPool = testJobs <= 1 ? null : new ForkJoinPool(testJobs);
+        final TimingReport timingReport = slowest <= 0 ? null : new TimingReport(slowest);
+        final Session session = new Session(project, testPool, timingReport);
         try {
             // get SPT
             Iterable<ILanguageComponent> sptComponents =
                 languageDiscoveryService.discover(languageDiscoveryService.request(sptLocation));
-            final ILanguageImpl spt = LanguageUtils.toImpls(sptComponents).iterator().next();
+            session.spt = LanguageUtils.toImpls(sptComponents).iterator().next();
             // get LUT
             Iterable<ILanguageComponent> lutComponents =
                 languageDiscoveryService.discover(languageDiscoveryService.request(lutLocation));
             final ILanguageImpl lut = LanguageUtils.toImpls(lutComponents).iterator().next();
+            session.lut = lut;
             // load any extra languages
+            final List<ILanguageComponent> components = Lists.newArrayList(sptComponents);
+            Iterables.addAll(components, lutComponents);
             for(FileObject languageLocation : languageLocations) {
-                languageDiscoveryService.discover(languageDiscoveryService.request(languageLocation));
+                Iterables.addAll(components,
+                    languageDiscoveryService.discover(languageDiscoveryService.request(languageLocation)));
+            }
+            if(cachePath != null) {
+                final SyntaxFacet syntax = lut.facet(SyntaxFacet.class);
+                session.resultCache = TestResultCache.open(testsLocation.resolveFile(cachePath), testsLocation,
+                    components, syntax == null ? null : syntax.parseTable, termFactoryService.getGeneric());
             }
             // process start symbol
-            ISpoofaxFragmentParserConfig fragmentConfig =
-                startSymbol == null ? null : new SpoofaxFragmentParserConfig();
-            if(fragmentConfig != null) {
-                fragmentConfig.putConfig(lut, new JSGLRParserConfiguration(startSymbol));
-            }
-
-            for(FileObject testSuite : project.location().findFiles(FileSelectorUtils.extension("spt"))) {
-                final String text;
-                try(InputStream in = testSuite.getContent().getInputStream()) {
-                    text = IOUtils.toString(in);
-                } catch(IOException e) {
-                    logger.error("Unable to process file {}", e, testSuite);
+            if(startSymbol != null) {
+                session.fragmentConfig = new SpoofaxFragmentParserConfig();
+                session.fragmentConfig.putConfig(lut, parserConfig(startSymbol));
+            }
+        } catch(MetaborgException | IOException | RuntimeException e) {
+            close(session);
+            throw e;
+        }
+        return session;
+    }
+
+    private void close(Session session) {
+        if(session.testPool != null) {
+            session.testPool.shutdownNow();
+        }
+        projectService.remove(session.project);
+    }
+
+
+    private void runSuites(List<FileObject> testSuites, final IProject project, final ILanguageImpl spt,
+        final ILanguageImpl lut, final ISpoofaxFragmentParserConfig fragmentConfig, final String testsPath, int jobs,
+        final ExecutorService testPool, final @Nullable TestResultCache resultCache,
+        final @Nullable TimingReport timingReport) throws MetaborgException {
+        final ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            final List<Future<SuiteLog>> logs = Lists.newArrayList();
+            for(final FileObject testSuite : testSuites) {
+                logs.add(pool.submit(new Callable<SuiteLog>() {
+                    @Override public SuiteLog call() throws Exception {
+                        return runSuite(testSuite, project, spt, lut, fragmentConfig, testsPath, testPool, resultCache,
+                            timingReport);
+                    }
+                }));
+            }
+            for(int i = 0; i < logs.size(); i++) {
+                try {
+                    logs.get(i).get().replay(logger);
+                } catch(ExecutionException e) {
+                    logger.error("Unable to run test suite {}", e.getCause(), testSuites.get(i));
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaborgException("Interrupted while running test suites", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void runPipelined(final List<FileObject> testSuites, final IProject project, final ILanguageImpl spt,
+        ILanguageImpl lut, ISpoofaxFragmentParserConfig fragmentConfig, String testsPath, int prefetch,
+        @Nullable ExecutorService testPool, @Nullable TestResultCache resultCache,
+        @Nullable TimingReport timingReport) throws MetaborgException {
+        final BlockingQueue<ExtractedSuite> queue = new ArrayBlockingQueue<>(prefetch);
+        // a daemon thread, so that an extraction that is stuck does not keep the JVM alive
+        final ExecutorService extraction = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("spt-extraction-%d").build());
+        try {
+            // extract the test suites ahead of the one that is being run
+            final Future<?> producer = extraction.submit(new Callable<Void>() {
+                @Override public Void call() throws InterruptedException {
+                    boolean interrupted = false;
+                    try {
+                        for(FileObject testSuite : testSuites) {
+                            queue.put(extractSuite(testSuite, project, spt));
+                        }
+                    } catch(InterruptedException e) {
+                        // the consumer is gone, nobody will take the end marker
+                        interrupted = true;
+                        throw e;
+                    } finally {
+                        if(!interrupted) {
+                            // never block here, the consumer also stops when the producer is done
+                            queue.offer(ExtractedSuite.END);
+                        }
+                    }
+                    return null;
+                }
+            });
+            while(true) {
+                final ExtractedSuite suite = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(suite == ExtractedSuite.END || suite == null && producer.isDone() && queue.isEmpty()) {
+                    break;
+                } else if(suite == null) {
                     continue;
                 }
-                ISpoofaxInputUnit input = inputService.inputUnit(testSuite, text, spt, null);
-                ISpoofaxTestCaseExtractionResult extractionResult = extractor.extract(input, project);
-
-                // use the start symbol of the test suite if no overriding start symbol has been given to this method
-                ISpoofaxFragmentParserConfig moduleFragmentConfig = fragmentConfig;
-                if(extractionResult.getStartSymbol() != null && moduleFragmentConfig == null) {
-                    moduleFragmentConfig = new SpoofaxFragmentParserConfig();
-                    moduleFragmentConfig.putConfig(lut,
-                        new JSGLRParserConfiguration(extractionResult.getStartSymbol()));
+                executeSuite(suite, project, lut, fragmentConfig, testsPath, testPool, resultCache, timingReport);
+                suite.log.replay(logger);
+            }
+            producer.get();
+        } catch(ExecutionException e) {
+            throw new MetaborgException("Unable to extract the test suites", e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MetaborgException("Interrupted while running test suites", e);
+        } finally {
+            extraction.shutdownNow();
+        }
+    }
+
+    private SuiteLog runSuite(FileObject testSuite, IProject project, ILanguageImpl spt, ILanguageImpl lut,
+        ISpoofaxFragmentParserConfig fragmentConfig, String testsPath, @Nullable ExecutorService testPool,
+        @Nullable TestResultCache resultCache, @Nullable TimingReport timingReport) {
+        final ExtractedSuite suite = extractSuite(testSuite, project, spt);
+        executeSuite(suite, project, lut, fragmentConfig, testsPath, testPool, resultCache, timingReport);
+        return suite.log;
+    }
+
+    private ExtractedSuite extractSuite(FileObject testSuite, IProject project, ILanguageImpl spt) {
+        final SuiteLog log = new SuiteLog();
+        final String text;
+        try(InputStream in = testSuite.getContent().getInputStream()) {
+            text = IOUtils.toString(in);
+        } catch(IOException e) {
+            log.error("Unable to process file {}", e, testSuite);
+            return new ExtractedSuite(testSuite, log, null, null);
+        }
+        ISpoofaxInputUnit input = inputService.inputUnit(testSuite, text, spt, null);
+        return new ExtractedSuite(testSuite, log, text, extractor.extract(input, project));
+    }
+
+    private void executeSuite(final ExtractedSuite suite, IProject project, ILanguageImpl lut,
+        ISpoofaxFragmentParserConfig fragmentConfig, String testsPath, @Nullable ExecutorService testPool,
+        final @Nullable TestResultCache resultCache, final @Nullable TimingReport timingReport) {
+        final ISpoofaxTestCaseExtractionResult extractionResult = suite.extractionResult;
+        final SuiteLog log = suite.log;
+        if(extractionResult == null) {
+            return;
+        }
+
+        // use the start symbol of the test suite if no overriding start symbol has been given to this method
+        ISpoofaxFragmentParserConfig moduleFragmentConfig = fragmentConfig;
+        if((extractionResult.getStartSymbol() != null || parseTimeout > 0) && moduleFragmentConfig == null) {
+            moduleFragmentConfig = new SpoofaxFragmentParserConfig();
+            moduleFragmentConfig.putConfig(lut, parserConfig(extractionResult.getStartSymbol()));
+        }
+
+        if(extractionResult.isSuccessful()) {
+            final Iterable<ITestCase> tests = extractionResult.getTests();
+            final String startSymbol = moduleFragmentConfig == null ? null
+                : moduleFragmentConfig.getParserConfigForLanguage(lut).overridingStartSymbol;
+            log.debug("Using the following start symbol for this suite: {}", startSymbol);
+
+            // only run the tests that have no cached result
+            final List<String> keys = Lists.newArrayList();
+            // equal tests have the same key, but their messages are at different locations
+            final List<TestResultCache.CachedTestResult> cachedResults = Lists.newArrayList();
+            final List<ITestCase> testsToRun = Lists.newArrayList();
+            for(ITestCase test : tests) {
+                final String key = resultCache == null ? null : TestResultCache.key(test, suite.text, startSymbol);
+                final TestResultCache.CachedTestResult cachedResult =
+                    key == null ? null : resultCache.get(test, key);
+                keys.add(key);
+                cachedResults.add(cachedResult);
+                if(cachedResult == null) {
+                    testsToRun.add(test);
                 }
+            }
+            listeners.suiteStarted(suite.testSuite);
+            // report the cached results in between the results of the tests that are run, to keep the test order
+            final Iterator<ITestCase> allTests = tests.iterator();
+            final Iterator<String> allKeys = keys.iterator();
+            final Iterator<TestResultCache.CachedTestResult> allCachedResults = cachedResults.iterator();
+            executor.runAll(project, testsToRun, lut, null, moduleFragmentConfig, testPool,
+                new ISpoofaxTestListener() {
+                    private String key;
+
+                    @Override public void suiteStarted(FileObject testSuite) {
+                    }
+
+                    @Override public void testStarted(ITestCase test) {
+                        // the cached tests before this one come first
+                        key = reportCached(suite, allTests, allKeys, allCachedResults, test);
+                        listeners.testStarted(test);
+                    }
 
-                if(extractionResult.isSuccessful()) {
-                    Iterable<ITestCase> tests = extractionResult.getTests();
-                    logger.debug("Using the following start symbol for this suite: {}", moduleFragmentConfig == null
-                        ? null : moduleFragmentConfig.getParserConfigForLanguage(lut).overridingStartSymbol);
-                    for(ITestCase test : tests) {
-                        logger.info("Running test '{}' of suite {}.", test.getDescription(), testSuite);
-                        ISpoofaxTestResult res = executor.run(project, test, lut, null, moduleFragmentConfig);
-                        logger.info("Test passed: {}", res.isSuccessful());
+                    @Override public void testFinished(ISpoofaxTestResult res) {
+                        // a test that timed out may pass next time, for example on a less busy machine
+                        if(key != null && !res.isTimedOut()) {
+                            resultCache.put(key, res);
+                        }
+                        if(timingReport != null) {
+                            timingReport.add(suite.testSuite, res);
+                        }
+                        log.info("Running test '{}' of suite {}.", res.getTest().getDescription(), suite.testSuite);
+                        log.info("Test passed: {}", res.isSuccessful());
                         for(IMessage m : res.getAllMessages()) {
-                            if(m.region() == null) {
-                                logger.info("\t{} : {}", m.severity(), m.message());
-                            } else {
-                                logger.info("\t@({}, {}) {} : {}", m.region().startOffset(), m.region().endOffset(),
-                                    m.severity(), m.message());
-                            }
+                            log.message(m);
                         }
+                        listeners.testFinished(res);
                     }
-                } else {
-                    logger.error("Failed to run tests at {}. Extraction of tests failed.", testsPath);
-                }
 
-                for(IMessage m : extractionResult.getAllMessages()) {
-                    if(m.region() == null) {
-                        logger.info("\t{} : {}", m.severity(), m.message());
-                    } else {
-                        logger.info("\t@({}, {}) {} : {}", m.region().startOffset(), m.region().endOffset(),
-                            m.severity(), m.message());
+                    @Override public void suiteFinished(FileObject testSuite) {
                     }
-                }
+                });
+            reportCached(suite, allTests, allKeys, allCachedResults, null);
+            // the contexts of a test suite are not reused by other test suites
+            contextPool.clear(suite.testSuite);
+            listeners.suiteFinished(suite.testSuite);
+        } else {
+            log.error("Failed to run tests at {}. Extraction of tests failed.", null, testsPath);
+        }
+
+        for(IMessage m : extractionResult.getAllMessages()) {
+            log.message(m);
+        }
+    }
+
+
+    /**
+     * Create the parser configuration for the fragments of the language under test, with the parse timeout.
+     */
+    private JSGLRParserConfiguration parserConfig(@Nullable String startSymbol) {
+        final JSGLRParserConfiguration config = new JSGLRParserConfiguration(startSymbol);
+        if(parseTimeout <= 0) {
+            return config;
+        }
+        return new JSGLRParserConfiguration(config.implode, config.recovery, config.completion, parseTimeout,
+            startSymbol);
+    }
+
+    /**
+     * Report the cached results of the tests up to the given test that was run.
+     *
+     * @param ran
+     *            the test that was run, or null to report all remaining cached results.
+     * @return the cache key of the test that was run.
+     */
+    private @Nullable String reportCached(ExtractedSuite suite, Iterator<ITestCase> tests, Iterator<String> keys,
+        Iterator<TestResultCache.CachedTestResult> cachedResults, @Nullable ITestCase ran) {
+        while(tests.hasNext()) {
+            final ITestCase test = tests.next();
+            final String key = keys.next();
+            final TestResultCache.CachedTestResult cachedResult = cachedResults.next();
+            if(test == ran) {
+                return key;
             }
-        } finally {
-            projectService.remove(project);
+            suite.log.info("Test '{}' of suite {} did not change, using its cached result.", test.getDescription(),
+                suite.testSuite);
+            suite.log.info("Test passed: {}", cachedResult.successful);
+            for(IMessage m : cachedResult.messages) {
+                suite.log.message(m);
+            }
+            listeners.testStarted(test);
+            listeners.testFinished(cachedResult.toResult(test));
+        }
+        return null;
+    }
+
+
+    /**
+     * The languages and project of a run of the tests at one location.
+     */
+    private static class Session {
+        public final IProject project;
+        public final @Nullable ExecutorService testPool;
+        public final @Nullable TimingReport timingReport;
+        public ILanguageImpl spt;
+        public ILanguageImpl lut;
+        public @Nullable ISpoofaxFragmentParserConfig fragmentConfig;
+        public @Nullable TestResultCache resultCache;
+
+        public Session(IProject project, @Nullable ExecutorService testPool, @Nullable TimingReport timingReport) {
+            this.project = project;
+            this.testPool = testPool;
+            this.timingReport = timingReport;
+        }
+    }
+
+    /**
+     * A test suite, after its tests were extracted.
+     */
+    private static class ExtractedSuite {
+        /**
+         * Marks the end of the test suites in the extraction pipeline.
+         */
+        public static final ExtractedSuite END = new ExtractedSuite(null, null, null, null);
+
+        public final FileObject testSuite;
+        public final SuiteLog log;
+        public final @Nullable String text;
+        public final @Nullable ISpoofaxTestCaseExtractionResult extractionResult;
+
+        public ExtractedSuite(FileObject testSuite, SuiteLog log, @Nullable String text,
+            @Nullable ISpoofaxTestCaseExtractionResult extractionResult) {
+            this.testSuite = testSuite;
+            this.log = log;
+            this.text = text;
+            this.extractionResult = extractionResult;
         }
     }
 }
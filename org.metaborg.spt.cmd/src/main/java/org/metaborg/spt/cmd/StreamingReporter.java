@@ -0,0 +1,113 @@
+package org.metaborg.spt.cmd;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.spt.core.run.ISpoofaxTestListener;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Base class for reporters that write test results to a file as soon as each test finishes.
+ *
+ * The file is written through a buffered channel, and nothing is kept of a result after it has been written. If
+ * writing fails, the error is logged once and the rest of the results are not written, so that the test run itself
+ * is not affected.
+ */
+public abstract class StreamingReporter implements ISpoofaxTestListener, Closeable {
+    private static final ILogger logger = LoggerUtils.logger(StreamingReporter.class);
+
+    private final File file;
+    private final Writer writer;
+    private boolean failed = false;
+
+
+    public StreamingReporter(File file) throws IOException {
+        this.file = file;
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, Charsets.UTF_8.newEncoder(), -1));
+    }
+
+    @Override public void suiteStarted(FileObject testSuite) {
+    }
+
+    @Override public void testStarted(ITestCase test) {
+    }
+
+    @Override public void testFinished(ISpoofaxTestResult result) {
+        write(test(result));
+    }
+
+    @Override public void suiteFinished(FileObject testSuite) {
+    }
+
+    @Override public void close() throws IOException {
+        write(end());
+        writer.close();
+    }
+
+    /**
+     * @return the text to write for the given result.
+     */
+    protected abstract String test(ISpoofaxTestResult result);
+
+    /**
+     * @return the text to write at the end of the file, or null to write nothing.
+     */
+    protected abstract @Nullable String end();
+
+    /**
+     * Write the given text right away, e.g. a header from the constructor of a subclass.
+     */
+    protected void write(@Nullable String text) {
+        if(failed || text == null) {
+            return;
+        }
+        try {
+            writer.write(text);
+        } catch(IOException e) {
+            logger.error("Unable to write test report {}, no further results will be written", e, file);
+            failed = true;
+        }
+    }
+
+    /**
+     * The time it took to run the given test, in seconds, or a negative number if the test was not run.
+     */
+    protected static double seconds(ISpoofaxTestResult result) {
+        return result.getWallTime() / 1e9;
+    }
+
+    /**
+     * Whether the result of the given test was reused from an earlier run, instead of running the test.
+     */
+    protected static boolean isCached(ISpoofaxTestResult result) {
+        return result.getWallTime() < 0;
+    }
+
+    /**
+     * A single line description of a message, with its severity and region.
+     */
+    protected static String describe(IMessage m) {
+        if(m.region() == null) {
+            return m.severity() + " : " + m.message();
+        }
+        return "@(" + m.region().startOffset() + ", " + m.region().endOffset() + ") " + m.severity() + " : "
+            + m.message();
+    }
+}
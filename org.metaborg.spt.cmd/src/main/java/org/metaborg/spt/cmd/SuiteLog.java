@@ -0,0 +1,82 @@
+package org.metaborg.spt.cmd;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.util.log.ILogger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Collects the log output of a single test suite.
+ *
+ * Test suites that run in parallel write to their own log, which is replayed once the suite is done. This keeps the
+ * output of each suite together and in the same order as when running the suites one after another.
+ */
+public class SuiteLog {
+    private static enum Level {
+        DEBUG, INFO, ERROR
+    }
+
+    private static class Entry {
+        public final Level level;
+        public final String fmt;
+        public final @Nullable Throwable t;
+        public final Object[] args;
+
+        public Entry(Level level, String fmt, @Nullable Throwable t, Object[] args) {
+            this.level = level;
+            this.fmt = fmt;
+            this.t = t;
+            this.args = args;
+        }
+    }
+
+    private final List<Entry> entries = Lists.newArrayList();
+
+
+    public void debug(String fmt, Object... args) {
+        entries.add(new Entry(Level.DEBUG, fmt, null, args));
+    }
+
+    public void info(String fmt, Object... args) {
+        entries.add(new Entry(Level.INFO, fmt, null, args));
+    }
+
+    public void error(String fmt, @Nullable Throwable t, Object... args) {
+        entries.add(new Entry(Level.ERROR, fmt, t, args));
+    }
+
+    /**
+     * Log the given message, with its region if it has one.
+     */
+    public void message(IMessage m) {
+        if(m.region() == null) {
+            info("\t{} : {}", m.severity(), m.message());
+        } else {
+            info("\t@({}, {}) {} : {}", m.region().startOffset(), m.region().endOffset(), m.severity(),
+                m.message());
+        }
+    }
+
+    /**
+     * Write all collected entries to the given logger, in the order in which they were collected.
+     */
+    public void replay(ILogger logger) {
+        for(Entry entry : entries) {
+            switch(entry.level) {
+                case DEBUG:
+                    logger.debug(entry.fmt, entry.args);
+                    break;
+                case INFO:
+                    logger.info(entry.fmt, entry.args);
+                    break;
+                case ERROR:
+                    logger.error(entry.fmt, entry.t, entry.args);
+                    break;
+            }
+        }
+    }
+}
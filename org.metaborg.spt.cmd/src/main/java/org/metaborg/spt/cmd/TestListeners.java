@@ -0,0 +1,49 @@
+package org.metaborg.spt.cmd;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.spt.core.run.ISpoofaxTestListener;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+
+/**
+ * Forwards test events to any number of listeners, one event at a time.
+ */
+public class TestListeners implements ISpoofaxTestListener {
+    private final List<ISpoofaxTestListener> listeners = new CopyOnWriteArrayList<>();
+
+
+    public void add(ISpoofaxTestListener listener) {
+        listeners.add(listener);
+    }
+
+    public void remove(ISpoofaxTestListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override public synchronized void suiteStarted(FileObject testSuite) {
+        for(ISpoofaxTestListener listener : listeners) {
+            listener.suiteStarted(testSuite);
+        }
+    }
+
+    @Override public synchronized void testStarted(ITestCase test) {
+        for(ISpoofaxTestListener listener : listeners) {
+            listener.testStarted(test);
+        }
+    }
+
+    @Override public synchronized void testFinished(ISpoofaxTestResult result) {
+        for(ISpoofaxTestListener listener : listeners) {
+            listener.testFinished(result);
+        }
+    }
+
+    @Override public synchronized void suiteFinished(FileObject testSuite) {
+        for(ISpoofaxTestListener listener : listeners) {
+            listener.suiteFinished(testSuite);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package org.metaborg.spt.cmd;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.Selectors;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.core.messages.MessageBuilder;
+import org.metaborg.core.messages.MessageSeverity;
+import org.metaborg.core.messages.MessageType;
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.mbt.core.model.IFragment.FragmentPiece;
+import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.mbt.core.model.expectations.ITestExpectation;
+import org.metaborg.mbt.core.model.expectations.ParseExpectation;
+import org.metaborg.spt.core.expectations.ParseToAtermExpectation;
+import org.metaborg.spt.core.run.ConstructorCoverage;
+import org.metaborg.spt.core.run.ISpoofaxTestExpectationOutput;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+import org.metaborg.spt.core.run.SpoofaxFragmentResult;
+import org.metaborg.spt.core.run.SpoofaxTestResult;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+import org.metaborg.util.resource.FileSelectorUtils;
+import org.spoofax.interpreter.terms.ITermFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Stores the outcome and messages of tests on disk, so that unchanged tests do not have to be run again.
+ *
+ * A test is identified by a hash of its text in the test suite, the text of its fragment and the start symbol that is
+ * used to parse it. Offsets are taken relative to the start of the test, so a test that only moved because text before
+ * it was edited keeps its result. The messages on the test and on its fragment are moved along with it.
+ *
+ * The cache keeps a fingerprint of the built artifacts of the languages that were loaded, except for the parse table
+ * of the language under test. When the fingerprint changes, all cached results are discarded, except those of tests
+ * that only parse with the language under test. Those only depend on the parse table.
+ *
+ * Each result also records the constructors that the test covered. When the parse table changed, only the results of
+ * tests that cover a constructor affected by the change are discarded, see
+ * {@link ParseTableSignature#affectedConstructors(ParseTableSignature)}. If the affected constructors cannot be
+ * determined, all results are discarded. If the parse table has no {@link ParseTableSignature}, it is part of the
+ * fingerprint instead, and all results are discarded when the fingerprint changes.
+ */
+public class TestResultCache {
+    private static final ILogger logger = LoggerUtils.logger(TestResultCache.class);
+
+    private static final String fingerprintFile = "fingerprint";
+    private static final String grammarFile = "grammar";
+    private static final String resultExtension = "result";
+    private static final String builtLocation = "target/metaborg";
+    private static final String[] facetFiles = { "metaborg.yaml", "src-gen/metaborg.component.yaml" };
+
+    private final FileObject location;
+
+
+    private TestResultCache(FileObject location) {
+        this.location = location;
+    }
+
+    /**
+     * Open the cache at the given location, for the given languages.
+     *
+     * @param location
+     *            the directory of the cache. It is created if it does not exist.
+     * @param testsLocation
+     *            the directory of the tests, which is not part of the fingerprint of the languages.
+     * @param components
+     *            all language components that were loaded to run the tests.
+     * @param parseTable
+     *            the parse table of the language under test, or null if it has none.
+     * @param termFactory
+     *            the term factory to read the parse table with.
+     * @return the cache.
+     */
+    public static TestResultCache open(FileObject location, FileObject testsLocation,
+        Iterable<ILanguageComponent> components, @Nullable FileObject parseTable, ITermFactory termFactory)
+        throws IOException {
+        final FileObject fingerprintLocation = location.resolveFile(fingerprintFile);
+        final FileObject grammarLocation = location.resolveFile(grammarFile);
+        final ParseTableSignature grammar =
+            parseTable == null ? null : ParseTableSignature.of(parseTable, termFactory);
+        final String fingerprint = fingerprint(components, testsLocation, location, parseTable, grammar != null);
+
+        final String oldFingerprint = readString(fingerprintLocation);
+        final boolean languagesChanged = oldFingerprint != null && !fingerprint.equals(oldFingerprint);
+        final ParseTableSignature oldGrammar = ParseTableSignature.read(grammarLocation);
+        final Set<String> affected;
+        if(oldFingerprint == null) {
+            // a new cache has nothing to discard
+            affected = Collections.emptySet();
+        } else if(grammar == null || oldGrammar == null) {
+            // the parse table was part of the fingerprint, now or the last time
+            affected = languagesChanged ? null : Collections.<String>emptySet();
+        } else {
+            affected = oldGrammar.affectedConstructors(grammar);
+        }
+        if(affected == null) {
+            if(grammar != null && oldGrammar != null) {
+                logger.info("Unable to determine what changed in the grammar, discarding cached test results at {}",
+                    location);
+            } else {
+                logger.info("The languages changed, discarding cached test results at {}", location);
+            }
+            location.delete(Selectors.EXCLUDE_SELF);
+        } else if(languagesChanged || !affected.isEmpty()) {
+            logger.info("The languages changed, discarding cached results of tests that analyze or cover {}",
+                affected);
+            discard(location, languagesChanged, affected);
+        }
+
+        location.createFolder();
+        try(OutputStream out = fingerprintLocation.getContent().getOutputStream()) {
+            IOUtils.write(fingerprint, out, Charsets.UTF_8);
+        }
+        if(grammar == null) {
+            grammarLocation.delete();
+        } else {
+            grammar.write(grammarLocation);
+        }
+        return new TestResultCache(location);
+    }
+
+    /**
+     * Compute the key of the given test.
+     *
+     * @param test
+     *            the test.
+     * @param suiteText
+     *            the text of the test suite that contains the test.
+     * @param startSymbol
+     *            the start symbol that is used to parse the fragment of the test.
+     * @return the key.
+     */
+    public static String key(ITestCase test, String suiteText, @Nullable String startSymbol) {
+        final int start = start(test);
+        final int end = Math.min(suiteText.length(), end(test) + 1);
+
+        final Hasher hasher = Hashing.sha1().newHasher();
+        hasher.putString(suiteText.substring(start, Math.max(start, end)), Charsets.UTF_8);
+        // the fragment may contain text from outside the test, such as a fixture
+        for(FragmentPiece piece : test.getFragment().getText()) {
+            hasher.putInt(piece.startOffset - start);
+            hasher.putString(piece.text, Charsets.UTF_8);
+        }
+        hasher.putString(String.valueOf(startSymbol), Charsets.UTF_8);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Get the cached result of the given test, with its messages moved to the current location of the test.
+     *
+     * @param key
+     *            the key of the test, see {@link #key(ITestCase, String, String)}.
+     * @return the cached result, or null if there is none or if it could not be read.
+     */
+    public @Nullable CachedTestResult get(ITestCase test, String key) {
+        try {
+            final FileObject file = location.resolveFile(key + "." + resultExtension);
+            if(!file.exists()) {
+                return null;
+            }
+            return read(file, start(test));
+        } catch(IOException | IllegalArgumentException e) {
+            logger.warn("Unable to read cached test result {}", e, key);
+            return null;
+        }
+    }
+
+    /**
+     * Store the result of the test with the given key.
+     */
+    public void put(String key, ISpoofaxTestResult result) {
+        try {
+            final FileObject file = location.resolveFile(key + "." + resultExtension);
+            // write to a temporary file first, so a result is never read while it is being written
+            final FileObject tmp = location.resolveFile(key + "." + Thread.currentThread().getId() + ".tmp");
+            final ITestCase test = result.getTest();
+            final int start = start(test);
+            final List<ISourceRegion> testRegions = Lists.newArrayList();
+            testRegions.add(new SourceRegion(start, end(test)));
+            for(FragmentPiece piece : test.getFragment().getText()) {
+                testRegions.add(new SourceRegion(piece.startOffset, piece.startOffset + piece.text.length()));
+            }
+            try(DataOutputStream out = new DataOutputStream(tmp.getContent().getOutputStream())) {
+                out.writeBoolean(result.isSuccessful());
+                final List<IMessage> messages = Lists.newArrayList(result.getAllMessages());
+                out.writeInt(messages.size());
+                for(IMessage message : messages) {
+                    out.writeUTF(message.severity().name());
+                    out.writeUTF(message.type().name());
+                    // messages on the test or its fragment move along with the test, other messages stay where they are
+                    final ISourceRegion region = message.region();
+                    final boolean relative = region != null && contains(testRegions, region);
+                    final int shift = relative ? start : 0;
+                    out.writeBoolean(relative);
+                    out.writeInt(region == null ? -1 : region.startOffset() - shift);
+                    out.writeInt(region == null ? -1 : region.endOffset() - shift);
+                    writeString(out, message.message() == null ? "" : message.message());
+                }
+                out.writeBoolean(isParseOnly(test));
+                final Set<String> constructors = ConstructorCoverage.of(result);
+                out.writeInt(constructors == null ? -1 : constructors.size());
+                if(constructors != null) {
+                    for(String constructor : constructors) {
+                        writeString(out, constructor);
+                    }
+                }
+            }
+            tmp.moveTo(file);
+        } catch(IOException e) {
+            logger.warn("Unable to cache test result {}", e, key);
+        }
+    }
+
+
+    /**
+     * The offset at which the given test starts in its test suite.
+     */
+    private static int start(ITestCase test) {
+        // the test spans from its description until the end of its last expectation
+        int start = test.getDescriptionRegion().startOffset();
+        for(ITestExpectation expectation : test.getExpectations()) {
+            final ISourceRegion region = expectation.region();
+            if(region != null) {
+                start = Math.min(start, region.startOffset());
+            }
+        }
+        return Math.max(0, start);
+    }
+
+    /**
+     * The offset of the last character of the given test in its test suite.
+     */
+    private static int end(ITestCase test) {
+        int end = Math.max(test.getDescriptionRegion().endOffset(), test.getFragment().getRegion().endOffset());
+        for(ITestExpectation expectation : test.getExpectations()) {
+            final ISourceRegion region = expectation.region();
+            if(region != null) {
+                end = Math.max(end, region.endOffset());
+            }
+        }
+        return end;
+    }
+
+    private static boolean contains(List<ISourceRegion> regions, ISourceRegion region) {
+        for(ISourceRegion testRegion : regions) {
+            if(testRegion.contains(region)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the test only parses fragments with the language under test.
+     */
+    private static boolean isParseOnly(ITestCase test) {
+        for(ITestExpectation expectation : test.getExpectations()) {
+            if(expectation instanceof ParseToAtermExpectation) {
+                continue;
+            }
+            if(!(expectation instanceof ParseExpectation)
+                || ((ParseExpectation) expectation).outputLanguage() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a cached result.
+     *
+     * @param start
+     *            the offset at which the test now starts, to move the messages on the test to.
+     */
+    private static CachedTestResult read(FileObject file, int start) throws IOException {
+        try(DataInputStream in = new DataInputStream(file.getContent().getInputStream())) {
+            final boolean successful = in.readBoolean();
+            final int messageCount = in.readInt();
+            final List<IMessage> messages = Lists.newArrayListWithCapacity(messageCount);
+            for(int i = 0; i < messageCount; i++) {
+                final MessageBuilder builder = MessageBuilder.create();
+                builder.withSeverity(MessageSeverity.valueOf(in.readUTF()));
+                builder.withType(MessageType.valueOf(in.readUTF()));
+                final int shift = in.readBoolean() ? start : 0;
+                final int regionStart = in.readInt();
+                final int regionEnd = in.readInt();
+                if(regionStart >= 0) {
+                    builder.withRegion(new SourceRegion(regionStart + shift, regionEnd + shift));
+                }
+                builder.withMessage(readString(in));
+                messages.add(builder.build());
+            }
+            final boolean parseOnly = in.readBoolean();
+            final int constructorCount = in.readInt();
+            Set<String> constructors = null;
+            if(constructorCount >= 0) {
+                constructors = Sets.newHashSetWithExpectedSize(constructorCount);
+                for(int i = 0; i < constructorCount; i++) {
+                    constructors.add(readString(in));
+                }
+            }
+            return new CachedTestResult(successful, messages, parseOnly, constructors);
+        }
+    }
+
+    /**
+     * Delete the results of tests that cover any of the given constructors, or of which the coverage is unknown. If
+     * the languages changed, also delete the results of tests that do more than parsing.
+     */
+    private static void discard(FileObject location, boolean languagesChanged, Set<String> constructors)
+        throws FileSystemException {
+        final FileObject[] files = location.findFiles(FileSelectorUtils.extension(resultExtension));
+        if(files == null) {
+            return;
+        }
+        for(FileObject file : files) {
+            final CachedTestResult result;
+            try {
+                // only the outcome and coverage are needed, not the location of the messages
+                result = read(file, 0);
+            } catch(IOException | IllegalArgumentException e) {
+                file.delete();
+                continue;
+            }
+            if(languagesChanged && !result.parseOnly) {
+                file.delete();
+            } else if(!constructors.isEmpty()
+                && (result.constructors == null || !Collections.disjoint(result.constructors, constructors))) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Compute a fingerprint of the built artifacts of the given language components, ignoring the tests and the cache
+     * itself.
+     *
+     * @param signed
+     *            whether changes to the parse table of the language under test are handled by its
+     *            {@link ParseTableSignature}. If so, the parse table is not part of the fingerprint.
+     */
+    private static String fingerprint(Iterable<ILanguageComponent> components, FileObject testsLocation,
+        FileObject cacheLocation, @Nullable FileObject parseTable, boolean signed) throws FileSystemException {
+        final List<String> componentHashes = Lists.newArrayList();
+        for(ILanguageComponent component : components) {
+            final Hasher hasher = Hashing.sha1().newHasher();
+            hasher.putString(component.id().toString(), Charsets.UTF_8);
+            final FileObject root = component.location();
+            final List<FileObject> files = builtFiles(root);
+            Collections.sort(files);
+            for(FileObject file : files) {
+                if(testsLocation.getName().isDescendent(file.getName())
+                    || cacheLocation.getName().isDescendent(file.getName())) {
+                    // the tests, and thus the cache, may be inside the language
+                    continue;
+                }
+                if(signed && parseTable != null && file.getName().equals(parseTable.getName())) {
+                    // changes to the parse table are handled separately
+                    continue;
+                }
+                hasher.putString(root.getName().getRelativeName(file.getName()), Charsets.UTF_8);
+                try(InputStream in = file.getContent().getInputStream()) {
+                    hasher.putBytes(IOUtils.toByteArray(in));
+                } catch(IOException e) {
+                    throw new FileSystemException(e);
+                }
+            }
+            componentHashes.add(hasher.hash().toString());
+        }
+        // the order in which the components were loaded does not matter
+        Collections.sort(componentHashes);
+        final Hasher hasher = Hashing.sha1().newHasher();
+        for(String componentHash : componentHashes) {
+            hasher.putString(componentHash, Charsets.UTF_8);
+        }
+        if(!signed && parseTable != null) {
+            // the parse table may not be among the built files
+            try(InputStream in = parseTable.getContent().getInputStream()) {
+                hasher.putBytes(IOUtils.toByteArray(in));
+            } catch(IOException e) {
+                throw new FileSystemException(e);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Get the files that were built for the language component at the given location.
+     *
+     * A component that was loaded from an archive only contains built files. A component that was loaded from a
+     * language project has its built files in {@link #builtLocation}, and its configuration in the facet files.
+     * Sources, version control files and other build output are not part of the language.
+     */
+    private static List<FileObject> builtFiles(FileObject root) throws FileSystemException {
+        final List<FileObject> files = Lists.newArrayList();
+        if(root.getFileSystem().getParentLayer() != null) {
+            addFiles(root, files);
+        } else {
+            addFiles(root.resolveFile(builtLocation), files);
+            for(String facetFile : facetFiles) {
+                addFiles(root.resolveFile(facetFile), files);
+            }
+        }
+        return files;
+    }
+
+    private static void addFiles(FileObject location, List<FileObject> files) throws FileSystemException {
+        if(!location.exists()) {
+            return;
+        }
+        if(location.isFile()) {
+            files.add(location);
+            return;
+        }
+        final FileObject[] found = location.findFiles(Selectors.SELECT_FILES);
+        if(found != null) {
+            files.addAll(Arrays.asList(found));
+        }
+    }
+
+    private static @Nullable String readString(FileObject file) throws FileSystemException {
+        if(!file.exists()) {
+            return null;
+        }
+        try(InputStream in = file.getContent().getInputStream()) {
+            return IOUtils.toString(in, Charsets.UTF_8);
+        } catch(IOException e) {
+            throw new FileSystemException(e);
+        }
+    }
+
+    // unlike writeUTF, these are not limited in length
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+
+    /**
+     * The outcome and messages of a test, as read from the cache.
+     */
+    public static class CachedTestResult {
+        public final boolean successful;
+        public final List<IMessage> messages;
+        public final boolean parseOnly;
+        public final @Nullable Set<String> constructors;
+
+        public CachedTestResult(boolean successful, List<IMessage> messages, boolean parseOnly,
+            @Nullable Set<String> constructors) {
+            this.successful = successful;
+            this.messages = messages;
+            this.parseOnly = parseOnly;
+            this.constructors = constructors;
+        }
+
+        /**
+         * Get a test result for the given test with the cached success and messages.
+         *
+         * The result has no parse or analysis result, and no expectation results.
+         */
+        public ISpoofaxTestResult toResult(ITestCase test) {
+            return new SpoofaxTestResult(test, successful, messages,
+                new SpoofaxFragmentResult(test.getFragment(), null, null, null),
+                Collections.<ISpoofaxTestExpectationOutput>emptyList());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.metaborg.spt.cmd;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.mbt.core.run.PhaseTiming;
+import org.metaborg.spt.core.run.ISpoofaxTestResult;
+import org.metaborg.util.log.ILogger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Collects the phase timings of test results, to report the slowest tests and the phases that took the most time.
+ *
+ * Only the slowest tests are kept, so the report does not hold on to all test results. Results may be added from
+ * multiple threads.
+ */
+public class TimingReport {
+    private final int size;
+    private final PriorityQueue<TestTiming> slowest;
+    private final Map<String, PhaseTotal> phases = Maps.newHashMap();
+
+
+    /**
+     * @param size
+     *            the number of slowest tests and phases to report.
+     */
+    public TimingReport(int size) {
+        this.size = size;
+        this.slowest = new PriorityQueue<>(size + 1, new Comparator<TestTiming>() {
+            @Override public int compare(TestTiming t1, TestTiming t2) {
+                return Long.compare(t1.wallTime, t2.wallTime);
+            }
+        });
+    }
+
+    /**
+     * Add the timings of the given result of a test from the given test suite.
+     */
+    public synchronized void add(FileObject testSuite, ISpoofaxTestResult result) {
+        long phaseTime = 0;
+        for(PhaseTiming timing : result.getTimings()) {
+            phaseTime += timing.wallTime();
+            PhaseTotal total = phases.get(timing.phase());
+            if(total == null) {
+                total = new PhaseTotal(timing.phase());
+                phases.put(timing.phase(), total);
+            }
+            total.add(timing);
+        }
+
+        // the wall time of the test includes the time in between phases, and the time until it timed out
+        final long wallTime = result.getWallTime() < 0 ? phaseTime : result.getWallTime();
+        slowest.add(new TestTiming(testSuite, result.getTest().getDescription(), wallTime, result.getTimings()));
+        if(slowest.size() > size) {
+            // drop the fastest of the slowest tests
+            slowest.poll();
+        }
+    }
+
+    /**
+     * Log the slowest tests, and the phases that took the most time over all tests.
+     */
+    public synchronized void log(ILogger logger) {
+        final List<TestTiming> tests = Lists.newArrayList(slowest);
+        Collections.sort(tests, Collections.reverseOrder(slowest.comparator()));
+        logger.info("Slowest {} tests:", tests.size());
+        for(TestTiming test : tests) {
+            logger.info("\t{} ms\t'{}' of suite {}", millis(test.wallTime), test.description, test.testSuite);
+            for(PhaseTiming timing : test.timings) {
+                logger.info("\t\t{}: {} ms wall, {} ms CPU, {} KB allocated", timing.phase(),
+                    millis(timing.wallTime()), millis(timing.cpuTime()), kilobytes(timing.allocatedBytes()));
+            }
+        }
+
+        final List<PhaseTotal> totals = Lists.newArrayList(phases.values());
+        Collections.sort(totals, new Comparator<PhaseTotal>() {
+            @Override public int compare(PhaseTotal t1, PhaseTotal t2) {
+                return Long.compare(t2.wallTime, t1.wallTime);
+            }
+        });
+        logger.info("Slowest {} phases over all tests:", Math.min(size, totals.size()));
+        for(PhaseTotal total : totals.subList(0, Math.min(size, totals.size()))) {
+            logger.info("\t{}: {} times, {} ms wall, {} ms CPU, {} KB allocated", total.phase, total.count,
+                millis(total.wallTime), millis(total.cpuTime), kilobytes(total.allocatedBytes));
+        }
+    }
+
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "?" : Long.toString(nanos / 1000000);
+    }
+
+    private static String kilobytes(long bytes) {
+        return bytes < 0 ? "?" : Long.toString(bytes / 1024);
+    }
+
+
+    private static class TestTiming {
+        public final FileObject testSuite;
+        public final String description;
+        public final long wallTime;
+        public final List<PhaseTiming> timings;
+
+        public TestTiming(FileObject testSuite, String description, long wallTime, List<PhaseTiming> timings) {
+            this.testSuite = testSuite;
+            this.description = description;
+            this.wallTime = wallTime;
+            this.timings = timings;
+        }
+    }
+
+    private static class PhaseTotal {
+        public final String phase;
+        public int count;
+        public long wallTime;
+        public long cpuTime;
+        public long allocatedBytes;
+
+        public PhaseTotal(String phase) {
+            this.phase = phase;
+        }
+
+        public void add(PhaseTiming timing) {
+            count++;
+            wallTime += timing.wallTime();
+            // once a measurement is missing, the total is unknown
+            cpuTime = cpuTime < 0 || timing.cpuTime() < 0 ? -1 : cpuTime + timing.cpuTime();
+            allocatedBytes =
+                allocatedBytes < 0 || timing.allocatedBytes() < 0 ? -1 : allocatedBytes + timing.allocatedBytes();
+        }
+    }
+}
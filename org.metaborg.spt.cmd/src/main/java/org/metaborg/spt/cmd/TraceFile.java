@@ -0,0 +1,89 @@
+package org.metaborg.spt.cmd;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.mbt.core.run.ITestTraceSink;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Writes trace events to a file in the Trace Event Format, which can be opened in chrome://tracing or Perfetto.
+ *
+ * Each event is a complete event on the thread that did the work, named after the kind of work, with the test suite,
+ * test and detail as arguments.
+ */
+public class TraceFile implements ITestTraceSink, Closeable {
+    private static final ILogger logger = LoggerUtils.logger(TraceFile.class);
+
+    private final Writer writer;
+    private final long origin = System.nanoTime();
+    private boolean first = true;
+    private boolean failed = false;
+
+
+    public TraceFile(File file) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+        writer.write("[");
+    }
+
+    @Override public synchronized void event(String kind, @Nullable FileObject resource, @Nullable String test,
+        @Nullable String detail, long start, long duration) {
+        if(failed) {
+            return;
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append(first ? "\n" : ",\n");
+        sb.append("{\"name\":");
+        JsonUtil.quote(kind, sb);
+        sb.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(Thread.currentThread().getId());
+        sb.append(",\"ts\":").append((start - origin) / 1000);
+        sb.append(",\"dur\":").append(duration / 1000);
+        sb.append(",\"args\":{");
+        boolean firstArg = true;
+        firstArg = arg("suite", resource == null ? null : resource.getName().getURI(), firstArg, sb);
+        firstArg = arg("test", test, firstArg, sb);
+        arg("detail", detail, firstArg, sb);
+        sb.append("}}");
+        try {
+            writer.write(sb.toString());
+            first = false;
+        } catch(IOException e) {
+            // don't fail the test run because of the trace
+            logger.error("Unable to write trace event, no further events will be written", e);
+            failed = true;
+        }
+    }
+
+    @Override public synchronized void close() throws IOException {
+        try {
+            writer.write("\n]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+
+    private static boolean arg(String name, @Nullable String value, boolean first, StringBuilder sb) {
+        if(value == null) {
+            return first;
+        }
+        if(!first) {
+            sb.append(',');
+        }
+        JsonUtil.quote(name, sb);
+        sb.append(':');
+        JsonUtil.quote(value, sb);
+        return false;
+    }
+}
@@ -0,0 +1,276 @@
+package org.metaborg.spt.cmd;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.apache.commons.vfs2.impl.DefaultFileSystemManager;
+import org.metaborg.util.log.ILogger;
+import org.metaborg.util.log.LoggerUtils;
+import org.metaborg.util.resource.FileSelectorUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs test suites in worker processes, each with its own heap, so that test suites can run in parallel beyond what a
+ * single Spoofax instance allows, and so that a test that crashes or exhausts its process does not end the run.
+ *
+ * Each worker is a JVM that runs {@link Main} with the same arguments, in worker mode. It loads the languages once and
+ * then runs the test suites that it reads from its standard input, one location per line, see
+ * {@link Runner#serve}. The output of a worker is passed on to the output of this process, except for the protocol
+ * lines, which start with {@link #PREFIX}:
+ * <ul>
+ * <li>{@link #READY} when the languages are loaded,</li>
+ * <li>{@link #RECYCLE} when the worker stops after the current suite, because it ran too many tests or uses too much
+ * heap,</li>
+ * <li>{@link #DONE} followed by the number of tests and failed tests, after each suite.</li>
+ * </ul>
+ *
+ * A worker that exits, because it was recycled or because it crashed, is replaced by a new one. A test suite of which
+ * the worker crashed is reported as failed, and is not run again.
+ */
+public class WorkerPool {
+    private static final ILogger logger = LoggerUtils.logger(WorkerPool.class);
+
+    public static final String PREFIX = "@spt-worker ";
+    public static final String READY = PREFIX + "ready";
+    public static final String RECYCLE = PREFIX + "recycle";
+    public static final String DONE = PREFIX + "done ";
+
+    private final List<String> command;
+    private final int workers;
+
+    private final AtomicInteger suites = new AtomicInteger();
+    private final AtomicInteger tests = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger crashed = new AtomicInteger();
+
+
+    /**
+     * @param arguments
+     *            the arguments of the workers, without the option that selects worker mode.
+     * @param workers
+     *            the number of workers to run at the same time.
+     */
+    public WorkerPool(List<String> arguments, int workers) {
+        final List<String> command = Lists.newArrayList();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        for(String jvmArgument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // workers can't all listen on the same debugger port
+            if(!jvmArgument.startsWith("-agentlib:jdwp") && !jvmArgument.startsWith("-Xrunjdwp")) {
+                command.add(jvmArgument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.addAll(arguments);
+        command.add("--worker");
+        this.command = command;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Run all test suites at the given location on the workers, and wait until they are done.
+     */
+    public void run(String testsPath) throws IOException, InterruptedException {
+        final DefaultFileSystemManager fileSystemManager = (DefaultFileSystemManager) VFS.getManager();
+        final FileObject testsLocation = fileSystemManager.resolveFile(new File("").getAbsoluteFile(), testsPath);
+        final Queue<String> queue = new ConcurrentLinkedQueue<>();
+        for(FileObject testSuite : testsLocation.findFiles(FileSelectorUtils.extension("spt"))) {
+            queue.add(testSuite.getName().getURI());
+        }
+        final int total = queue.size();
+
+        final ExecutorService threads = Executors.newFixedThreadPool(workers);
+        try {
+            final List<Future<?>> futures = Lists.newArrayList();
+            for(int i = 0; i < Math.min(workers, total); i++) {
+                final int id = i;
+                futures.add(threads.submit(new Runnable() {
+                    @Override public void run() {
+                        serve(id, queue);
+                    }
+                }));
+            }
+            for(Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch(ExecutionException e) {
+                    logger.error("Worker {} failed", e.getCause(), futures.indexOf(future));
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        if(!queue.isEmpty()) {
+            logger.error("{} of {} test suites were not run, as no worker could be started", queue.size(), total);
+        }
+        logger.info("Ran {} test suites with {} tests, of which {} failed. {} test suites crashed their worker",
+            suites.get(), tests.get(), failed.get(), crashed.get());
+    }
+
+    /**
+     * Run test suites from the queue on one worker after another, until the queue is empty.
+     */
+    private void serve(int id, Queue<String> queue) {
+        Worker worker = null;
+        try {
+            String testSuite;
+            while((testSuite = queue.poll()) != null) {
+                if(worker == null) {
+                    worker = Worker.start(command, id);
+                    if(worker == null) {
+                        // put the suite back, another worker may still be able to run it
+                        queue.add(testSuite);
+                        return;
+                    }
+                }
+                final int[] counts = worker.run(testSuite);
+                if(counts == null) {
+                    crashed.incrementAndGet();
+                    logger.error("Worker {} crashed with exit code {} while running test suite {}", id,
+                        worker.exit(), testSuite);
+                    worker = null;
+                    continue;
+                }
+                suites.incrementAndGet();
+                tests.addAndGet(counts[0]);
+                failed.addAndGet(counts[1]);
+                if(worker.recycle) {
+                    worker.exit();
+                    worker = null;
+                }
+            }
+            if(worker != null) {
+                // let the worker finish its output
+                worker.exit();
+                worker = null;
+            }
+        } catch(IOException e) {
+            logger.error("Lost connection to worker {}", e, id);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if(worker != null) {
+                worker.close();
+            }
+        }
+    }
+
+
+    /**
+     * A running worker process.
+     */
+    private static class Worker {
+        private final Process process;
+        private final PrintWriter in;
+        private final BufferedReader out;
+
+        /**
+         * Whether the worker stops after the test suite that it ran last.
+         */
+        public boolean recycle = false;
+
+
+        private Worker(Process process) {
+            this.process = process;
+            this.in = new PrintWriter(new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8));
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()));
+        }
+
+        /**
+         * Start a worker and wait until it has loaded the languages.
+         *
+         * @return the worker, or null if it exited before it was ready.
+         */
+        public static @Nullable Worker start(List<String> command, int id) throws IOException, InterruptedException {
+            logger.debug("Starting worker {}", id);
+            final Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            final Worker worker = new Worker(process);
+            if(worker.readUntil(READY) == null) {
+                logger.error("Worker {} exited with exit code {} before it was ready", id, worker.exit());
+                return null;
+            }
+            return worker;
+        }
+
+        /**
+         * Run the given test suite.
+         *
+         * @return the number of tests and failed tests of the suite, or null if the worker crashed.
+         */
+        public @Nullable int[] run(String testSuite) throws IOException {
+            in.println(testSuite);
+            in.flush();
+            String line;
+            while((line = readUntil(PREFIX)) != null) {
+                if(line.equals(RECYCLE)) {
+                    recycle = true;
+                } else if(line.startsWith(DONE)) {
+                    final String[] counts = line.substring(DONE.length()).split(" ");
+                    return new int[] { Integer.parseInt(counts[0]), Integer.parseInt(counts[1]) };
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Close the input of the worker, so that it stops, and wait until it exits.
+         *
+         * The remaining output of the worker is passed on first, as the worker blocks when nobody reads its output.
+         *
+         * @return the exit code of the worker.
+         */
+        public int exit() throws IOException, InterruptedException {
+            in.close();
+            while(readUntil(PREFIX) != null) {
+                // the worker has no more suites to report on, so later protocol lines are of no use
+            }
+            return process.waitFor();
+        }
+
+        /**
+         * Kill the worker.
+         */
+        public void close() {
+            in.close();
+            process.destroy();
+        }
+
+        /**
+         * Pass on the output of the worker until a line that starts with the given prefix.
+         *
+         * @return the line with the given prefix, or null if the worker exited.
+         */
+        private @Nullable String readUntil(String prefix) throws IOException {
+            String line;
+            while((line = out.readLine()) != null) {
+                if(line.startsWith(prefix)) {
+                    return line;
+                }
+                System.out.println(line);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.metaborg.spt.core;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+/**
+ * Creates a child injector with the {@link SPTModule} for a Spoofax injector that does not have the SPT bindings
+ * itself, such as the injector of Spoofax in Eclipse, together with the {@link SPTServices} from it.
+ *
+ * Bound as a singleton in the Spoofax injector by the {@link SpoofaxExtensionModule}, so that the child injector lives
+ * exactly as long as the Spoofax injector. A static map from Spoofax injectors to child injectors would keep the
+ * Spoofax injector alive, as a child injector refers to its parent.
+ */
+public class SPTChildInjector {
+
+    private final Injector spoofaxInjector;
+
+    private volatile SPTServices services;
+    private volatile Injector injector;
+
+
+    @Inject public SPTChildInjector(Injector spoofaxInjector) {
+        this.spoofaxInjector = spoofaxInjector;
+    }
+
+    /**
+     * Get the child injector, and create it on the first call.
+     *
+     * Safe to call from multiple threads. All calls get the same child injector.
+     */
+    public Injector get() {
+        create();
+        return injector;
+    }
+
+    /**
+     * Get the services from the child injector, and create them on the first call.
+     *
+     * Safe to call from multiple threads. All calls get the same services.
+     */
+    public SPTServices services() {
+        create();
+        return services;
+    }
+
+    private void create() {
+        // the services are assigned last, so they are only seen once both exist
+        if(services == null) {
+            synchronized(this) {
+                if(services == null) {
+                    final Injector childInjector = spoofaxInjector.createChildInjector(new SPTModule());
+                    injector = childInjector;
+                    services = new SPTServices(childInjector);
+                }
+            }
+        }
+    }
+}
@@ -11,16 +11,20 @@ import org.metaborg.mbt.core.model.expectations.ParseExpectation;
 import org.metaborg.mbt.core.model.expectations.ResolveExpectation;
 import org.metaborg.mbt.core.model.expectations.RunStrategoExpectation;
 import org.metaborg.mbt.core.model.expectations.TransformExpectation;
+import org.metaborg.mbt.core.run.ContextPool;
 import org.metaborg.mbt.core.run.IExpectationEvaluatorService;
 import org.metaborg.mbt.core.run.IFragmentParser;
 import org.metaborg.mbt.core.run.ITestCaseRunner;
 import org.metaborg.mbt.core.run.ITestExpectationEvaluator;
+import org.metaborg.mbt.core.run.TestTracer;
+import org.metaborg.mbt.core.run.TestWatchdog;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.metaborg.spt.core.expectations.ParseToAtermExpectation;
 import org.metaborg.spt.core.expectations.RunStrategoToAtermExpectation;
 import org.metaborg.spt.core.expectations.TransformToAtermExpectation;
+import org.metaborg.spt.core.extract.ExpectationProviderIndex;
 import org.metaborg.spt.core.extract.HasOriginExpectationProvider;
 import org.metaborg.spt.core.extract.ISpoofaxFragmentBuilder;
 import org.metaborg.spt.core.extract.ISpoofaxTestCaseBuilder;
@@ -43,8 +47,9 @@ import org.metaborg.spt.core.run.ISpoofaxExpectationEvaluatorService;
 import org.metaborg.spt.core.run.ISpoofaxFragmentParser;
 import org.metaborg.spt.core.run.ISpoofaxTestCaseRunner;
 import org.metaborg.spt.core.run.SpoofaxExpectationEvaluatorService;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser;
 import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
-import org.metaborg.spt.core.run.SpoofaxWhitespaceFragmentParser;
+import org.metaborg.spt.core.run.StrategoRuntimePool;
 import org.metaborg.spt.core.run.expectations.AnalyzeExpectationEvaluator;
 import org.metaborg.spt.core.run.expectations.HasOriginExpectationEvaluator;
 import org.metaborg.spt.core.run.expectations.ParseExpectationEvaluator;
@@ -88,7 +93,7 @@ public class SPTModule extends MBTModule {
     @Override protected void configureExpectationEvaluators() {
         super.configureExpectationProviders();
         // evaluator service
-        bind(SpoofaxExpectationEvaluatorService.class);
+        bind(SpoofaxExpectationEvaluatorService.class).in(Singleton.class);
         bind(new TypeLiteral<IExpectationEvaluatorService<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>>() {})
             .to(SpoofaxExpectationEvaluatorService.class);
         bind(ISpoofaxExpectationEvaluatorService.class).to(SpoofaxExpectationEvaluatorService.class);
@@ -162,9 +167,15 @@ public class SPTModule extends MBTModule {
         bind(new TypeLiteral<ITestCaseRunner<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>>() {})
             .to(SpoofaxTestCaseRunner.class);
         bind(ISpoofaxTestCaseRunner.class).to(SpoofaxTestCaseRunner.class);
+
+        bind(ContextPool.class).in(Singleton.class);
+        bind(StrategoRuntimePool.class).in(Singleton.class);
+        bind(TestTracer.class).in(Singleton.class);
+        bind(TestWatchdog.class).in(Singleton.class);
     }
 
     @Override protected void configureBuilders() {
+        bind(ExpectationProviderIndex.class).in(Singleton.class);
         bind(ISpoofaxTestCaseBuilder.class).to(SpoofaxTestCaseBuilder.class);
         bind(new TypeLiteral<ITestCaseBuilder<IStrategoTerm, IStrategoTerm>>() {}).to(SpoofaxTestCaseBuilder.class);
         bind(new TypeLiteral<ITestCaseBuilder<?, ?>>() {}).to(SpoofaxTestCaseBuilder.class);
@@ -176,11 +187,11 @@ public class SPTModule extends MBTModule {
     }
 
     @Override protected void configureFragmentParser() {
-        // for now, we keep using the whitespace hack
-        bind(SpoofaxWhitespaceFragmentParser.class).in(Singleton.class);
-        bind(ISpoofaxFragmentParser.class).to(SpoofaxWhitespaceFragmentParser.class);
-        bind(new TypeLiteral<IFragmentParser<?>>() {}).to(SpoofaxWhitespaceFragmentParser.class);
-        bind(new TypeLiteral<IFragmentParser<ISpoofaxParseUnit>>() {}).to(SpoofaxWhitespaceFragmentParser.class);
+        // parse only the fragment text and relocate the result, instead of padding it with whitespace
+        bind(SpoofaxRelocatingFragmentParser.class).in(Singleton.class);
+        bind(ISpoofaxFragmentParser.class).to(SpoofaxRelocatingFragmentParser.class);
+        bind(new TypeLiteral<IFragmentParser<?>>() {}).to(SpoofaxRelocatingFragmentParser.class);
+        bind(new TypeLiteral<IFragmentParser<ISpoofaxParseUnit>>() {}).to(SpoofaxRelocatingFragmentParser.class);
     }
 
     @Override public void configureUtil() {
@@ -0,0 +1,58 @@
+package org.metaborg.spt.core;
+
+import org.metaborg.core.language.ILanguageService;
+import org.metaborg.core.project.IProjectService;
+import org.metaborg.core.resource.IResourceService;
+import org.metaborg.mbt.core.run.ContextPool;
+import org.metaborg.mbt.core.run.TestWatchdog;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
+import org.metaborg.spt.core.extract.ISpoofaxTestCaseExtractor;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
+
+import com.google.inject.Injector;
+
+/**
+ * The services that the editor strategies need, from a child injector with the {@link SPTModule} of a Spoofax injector.
+ *
+ * The services are created once for each child injector, and held by it, see {@link SPTChildInjector}, so they are
+ * dropped together with Spoofax. Nothing static refers to either injector.
+ *
+ * Tests that run from the editor have a timeout, so that a test that does not end does not keep a background thread
+ * busy until Eclipse is closed.
+ */
+public class SPTServices {
+
+    private static final long TEST_TIMEOUT_MILLIS = 60000;
+
+    public final ISpoofaxInputUnitService inputService;
+    public final ISpoofaxUnitService unitService;
+    public final IResourceService resourceService;
+    public final IProjectService projectService;
+    public final ILanguageService langService;
+    public final ISpoofaxTestCaseExtractor extractor;
+    public final SpoofaxTestCaseRunner runner;
+    public final ContextPool contextPool;
+
+
+    SPTServices(Injector injector) {
+        this.inputService = injector.getInstance(ISpoofaxInputUnitService.class);
+        this.unitService = injector.getInstance(ISpoofaxUnitService.class);
+        this.resourceService = injector.getInstance(IResourceService.class);
+        this.projectService = injector.getInstance(IProjectService.class);
+        this.langService = injector.getInstance(ILanguageService.class);
+        this.extractor = injector.getInstance(ISpoofaxTestCaseExtractor.class);
+        this.runner = injector.getInstance(SpoofaxTestCaseRunner.class);
+        this.contextPool = injector.getInstance(ContextPool.class);
+        injector.getInstance(TestWatchdog.class).setTestTimeout(TEST_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Get the services for the given Spoofax injector.
+     *
+     * Safe to call from multiple threads. Calls for the same injector get the same instance.
+     */
+    public static SPTServices of(Injector spoofaxInjector) {
+        return spoofaxInjector.getInstance(SPTChildInjector.class).services();
+    }
+}
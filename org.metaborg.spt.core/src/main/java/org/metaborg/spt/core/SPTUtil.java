@@ -1,5 +1,7 @@
 package org.metaborg.spt.core;
 
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.terms.IStrategoAppl;
@@ -31,6 +33,34 @@ public class SPTUtil {
         }
     }
 
+    /**
+     * Whether the parser gave up on the given parse unit because it took longer than the timeout of its
+     * configuration.
+     * 
+     * The parser reports a timeout as an ordinary parse error, with the timeout exception attached if it has one.
+     */
+    public static boolean isParseTimeout(ISpoofaxParseUnit unit) {
+        if(unit.success()) {
+            return false;
+        }
+        for(IMessage message : unit.messages()) {
+            for(Throwable e = message.exception(); e != null; e = e.getCause()) {
+                // the package of the exception differs between versions of the parser
+                if(e.getClass().getSimpleName().equals("ParseTimeoutException")) {
+                    return true;
+                }
+                if(e.getCause() == e) {
+                    break;
+                }
+            }
+            final String text = message.message() == null ? "" : message.message().toLowerCase();
+            if(text.contains("timed out") || text.contains("time out") || text.contains("timeout")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static String noAnnosString(IStrategoTerm term) {
         return buildNoAnnosString(term, new StringBuilder()).toString();
     }
@@ -0,0 +1,68 @@
+package org.metaborg.spt.core.extract;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.metaborg.spt.core.SPTUtil;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+/**
+ * Finds the expectation providers to ask for an expectation term, by the constructor name of the term.
+ * 
+ * The index is built once, from all bound providers, and shared by all test case builders.
+ */
+public class ExpectationProviderIndex {
+
+    // the providers to ask for an expectation term with the given constructor, in the order in which they were bound
+    private final Map<String, List<ISpoofaxTestExpectationProvider>> providersByConstructor = Maps.newHashMap();
+    // the providers that didn't declare any constructors
+    private final List<ISpoofaxTestExpectationProvider> undeclaredProviders = Lists.newArrayList();
+
+
+    @Inject public ExpectationProviderIndex(Set<ISpoofaxTestExpectationProvider> expectationProviders) {
+        for(ISpoofaxTestExpectationProvider provider : expectationProviders) {
+            if(constructors(provider).isEmpty()) {
+                undeclaredProviders.add(provider);
+            }
+        }
+        for(ISpoofaxTestExpectationProvider provider : expectationProviders) {
+            for(String cons : constructors(provider)) {
+                if(providersByConstructor.containsKey(cons)) {
+                    continue;
+                }
+                // providers that didn't declare anything may still handle this constructor
+                final List<ISpoofaxTestExpectationProvider> providers = Lists.newArrayList();
+                for(ISpoofaxTestExpectationProvider candidate : expectationProviders) {
+                    final Collection<String> constructors = constructors(candidate);
+                    if(constructors.isEmpty() || constructors.contains(cons)) {
+                        providers.add(candidate);
+                    }
+                }
+                providersByConstructor.put(cons, providers);
+            }
+        }
+    }
+
+    /**
+     * Get the providers that may be able to handle the given expectation term, in the order in which they were bound.
+     */
+    public List<ISpoofaxTestExpectationProvider> providers(IStrategoTerm expectationTerm) {
+        final List<ISpoofaxTestExpectationProvider> providers =
+            providersByConstructor.get(SPTUtil.consName(expectationTerm));
+        return providers == null ? undeclaredProviders : providers;
+    }
+
+    private static Collection<String> constructors(ISpoofaxTestExpectationProvider provider) {
+        if(provider instanceof ISpoofaxDeclaredExpectationProvider) {
+            return ((ISpoofaxDeclaredExpectationProvider) provider).getConstructors();
+        }
+        return Collections.emptySet();
+    }
+}
@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.mbt.core.model.IFragment;
 import org.metaborg.mbt.core.model.expectations.HasOriginExpectation;
@@ -8,12 +10,13 @@ import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
  * Provider for the `has origin locations` expectation.
  */
-public class HasOriginExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class HasOriginExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final String HAS_ORIGIN = "HasOrigin";
 
@@ -23,6 +26,10 @@ public class HasOriginExpectationProvider implements ISpoofaxTestExpectationProv
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(HAS_ORIGIN);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         return HAS_ORIGIN.equals(SPTUtil.consName(expectationTerm)) && expectationTerm.getSubtermCount() == 0;
     }
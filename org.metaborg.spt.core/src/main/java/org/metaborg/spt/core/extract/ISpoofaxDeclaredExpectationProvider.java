@@ -0,0 +1,20 @@
+package org.metaborg.spt.core.extract;
+
+import java.util.Collection;
+
+/**
+ * An ISpoofaxTestExpectationProvider that declares the constructor names of the expectation terms it handles.
+ * 
+ * Implementing this interface is optional. The {@link ExpectationProviderIndex} only asks a declaring provider whether
+ * it can evaluate an expectation term if the constructor of that term is one of the declared names. Providers that do
+ * not implement this interface are asked for every expectation term.
+ */
+public interface ISpoofaxDeclaredExpectationProvider extends ISpoofaxTestExpectationProvider {
+
+    /**
+     * The constructor names of the expectation terms this provider can handle (e.g. ParseSucceeds).
+     * 
+     * @return the constructor names. If empty, the provider is asked for every expectation term.
+     */
+    public Collection<String> getConstructors();
+}
@@ -0,0 +1,193 @@
+package org.metaborg.spt.core.extract;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.spoofax.core.terms.ITermFactoryService;
+import org.metaborg.spt.core.SPTUtil;
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoList;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.terms.Term;
+
+import com.google.inject.Inject;
+
+/**
+ * Desugars the AST of a test suite the same way as the analysis of the SPT language does.
+ *
+ * This is a Java version of <code>desugar-before</code> in <code>trans/spt/desugar.str</code>, which is all that the
+ * analysis of SPT does. It applies the desugarings top down, and rewritten terms keep the origin of the term they
+ * replace, so the extractor can run on the result without asking the SPT language for an analysis.
+ *
+ * Any change to the desugarings in Stratego should be made here as well.
+ */
+public class SPTDesugarer {
+
+    private final ITermFactory factory;
+
+    @Inject public SPTDesugarer(ITermFactoryService termFactoryService) {
+        // the generic factory tracks origins, which the fragment builder needs to find the fragment text
+        this.factory = termFactoryService.getGeneric();
+    }
+
+    /**
+     * Desugar the given AST of a test suite.
+     *
+     * @return the desugared AST. Terms that did not change are shared with the given AST.
+     * @throws IllegalArgumentException
+     *             when the count of a message expectation or the reference of a resolve expectation is not a decimal
+     *             number. The <code>with</code> clauses of these desugarings fail in Stratego as well.
+     */
+    public IStrategoTerm desugar(IStrategoTerm ast) {
+        // topdown: rewrite the term itself first, then the subterms of the result
+        final IStrategoTerm rewritten = rewrite(ast);
+        final IStrategoTerm term = rewritten == null ? ast : rewritten;
+
+        IStrategoTerm[] kids = null;
+        for(int i = 0; i < term.getSubtermCount(); i++) {
+            final IStrategoTerm kid = term.getSubterm(i);
+            final IStrategoTerm desugaredKid = desugar(kid);
+            if(desugaredKid != kid) {
+                if(kids == null) {
+                    kids = term.getAllSubterms().clone();
+                }
+                kids[i] = desugaredKid;
+            }
+        }
+        if(kids == null) {
+            return term;
+        }
+
+        final IStrategoList annos = term.getAnnotations();
+        final IStrategoTerm copy;
+        switch(term.getTermType()) {
+            case IStrategoTerm.APPL:
+                copy = factory.makeAppl(((IStrategoAppl) term).getConstructor(), kids, annos);
+                break;
+            case IStrategoTerm.LIST:
+                copy = factory.makeList(kids, annos);
+                break;
+            case IStrategoTerm.TUPLE:
+                copy = factory.makeTuple(kids, annos);
+                break;
+            default:
+                // no other terms have subterms
+                return term;
+        }
+        return factory.replaceTerm(copy, term);
+    }
+
+    /**
+     * Apply one of the desugarings to the given term.
+     *
+     * @return the desugared term, or null if none of the desugarings apply.
+     */
+    private @Nullable IStrategoTerm rewrite(IStrategoTerm term) {
+        final String cons = SPTUtil.consName(term);
+        if(cons == null) {
+            return null;
+        }
+        final int arity = term.getSubtermCount();
+        switch(cons) {
+            case "Test2":
+            case "Test3":
+            case "Test4":
+                return arity == 5 ? replace(rename(term, SPTUtil.TEST_CONS), term) : null;
+            case "ToPart2":
+            case "ToPart3":
+            case "ToPart4":
+                return arity == 4 ? replace(rename(term, "ToPart"), term) : null;
+            case "OneError":
+                return arity == 0 ? replace(count("Errors", 1), term) : null;
+            case "OneWarning":
+                return arity == 0 ? replace(count("Warnings", 1), term) : null;
+            case "OneNote":
+                return arity == 0 ? replace(count("Notes", 1), term) : null;
+            case "Errors":
+            case "Warnings":
+            case "Notes":
+            case "Resolve":
+                return arity == 1 ? replace(toInts(term), term) : null;
+            case "ResolveTo":
+                return arity == 2 ? replace(toInts(term), term) : null;
+            case "Anno":
+                if(arity != 2 || !Term.isTermList(term.getSubterm(1))) {
+                    return null;
+                }
+                // the annotated term keeps its own origin
+                return replace(factory.annotateTerm(term.getSubterm(0), (IStrategoList) term.getSubterm(1)),
+                    term.getSubterm(0));
+            case "Appl":
+                if(arity != 2 || !Term.isTermString(term.getSubterm(0)) || !Term.isTermList(term.getSubterm(1))) {
+                    return null;
+                }
+                final IStrategoTerm[] kids = term.getSubterm(1).getAllSubterms();
+                return replace(
+                    factory.makeAppl(factory.makeConstructor(Term.asJavaString(term.getSubterm(0)), kids.length), kids),
+                    term);
+            case "List":
+                // the list was parsed, so it already has an origin
+                return arity == 1 && Term.isTermList(term.getSubterm(0)) ? term.getSubterm(0) : null;
+            case "Int":
+                final Integer i = arity == 1 ? toInt(term.getSubterm(0)) : null;
+                return i == null ? null : replace(factory.makeInt(i), term);
+            case "String":
+                return arity == 1 ? replace(unDoubleQuote(term.getSubterm(0)), term) : null;
+            default:
+                return null;
+        }
+    }
+
+    private @Nullable IStrategoTerm replace(@Nullable IStrategoTerm term, IStrategoTerm old) {
+        return term == null ? null : factory.replaceTerm(term, old);
+    }
+
+    private IStrategoTerm rename(IStrategoTerm term, String name) {
+        return factory.makeAppl(factory.makeConstructor(name, term.getSubtermCount()), term.getAllSubterms());
+    }
+
+    private IStrategoTerm count(String name, int n) {
+        return factory.makeAppl(factory.makeConstructor(name, 1), factory.makeInt(n));
+    }
+
+    /**
+     * Replace the decimal strings that are the subterms of the given term by ints.
+     *
+     * @throws IllegalArgumentException
+     *             when not all subterms are decimal strings.
+     */
+    private IStrategoTerm toInts(IStrategoTerm term) {
+        final IStrategoTerm[] kids = new IStrategoTerm[term.getSubtermCount()];
+        for(int i = 0; i < kids.length; i++) {
+            final Integer n = toInt(term.getSubterm(i));
+            if(n == null) {
+                throw new IllegalArgumentException("Unable to desugar " + term + ", " + term.getSubterm(i)
+                    + " is not a decimal number.");
+            }
+            kids[i] = factory.makeInt(n);
+        }
+        return factory.makeAppl(((IStrategoAppl) term).getConstructor(), kids);
+    }
+
+    private static @Nullable Integer toInt(IStrategoTerm term) {
+        if(!Term.isTermString(term)) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(Term.asJavaString(term));
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private @Nullable IStrategoTerm unDoubleQuote(IStrategoTerm term) {
+        if(!Term.isTermString(term)) {
+            return null;
+        }
+        final String s = Term.asJavaString(term);
+        if(s.length() < 2 || !s.startsWith("\"") || !s.endsWith("\"")) {
+            return null;
+        }
+        return factory.makeString(s.substring(1, s.length() - 1));
+    }
+}
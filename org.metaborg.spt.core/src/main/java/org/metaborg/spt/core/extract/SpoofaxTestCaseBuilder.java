@@ -3,7 +3,6 @@ package org.metaborg.spt.core.extract;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.project.IProject;
@@ -33,11 +32,11 @@ public class SpoofaxTestCaseBuilder implements ISpoofaxTestCaseBuilder {
     private ISourceRegion descriptionRegion = null;
     private List<IStrategoTerm> expectationTerms = null;
 
-    private final Set<ISpoofaxTestExpectationProvider> expectationProviders;
+    private final ExpectationProviderIndex expectationProviders;
     private final ISpoofaxFragmentBuilder fragmentBuilder;
     private final ISpoofaxTracingService trace;
 
-    @Inject public SpoofaxTestCaseBuilder(Set<ISpoofaxTestExpectationProvider> expectationProviders,
+    @Inject public SpoofaxTestCaseBuilder(ExpectationProviderIndex expectationProviders,
         ISpoofaxFragmentBuilder fragmentBuilder, ISpoofaxTracingService trace) {
         this.expectationProviders = expectationProviders;
         this.fragmentBuilder = fragmentBuilder;
@@ -113,7 +112,7 @@ public class SpoofaxTestCaseBuilder implements ISpoofaxTestCaseBuilder {
         final List<ITestExpectation> expectations = new LinkedList<>();
         for(IStrategoTerm expectationTerm : expectationTerms) {
             boolean found = false;
-            for(ISpoofaxTestExpectationProvider provider : expectationProviders) {
+            for(ISpoofaxTestExpectationProvider provider : expectationProviders.providers(expectationTerm)) {
                 if(provider.canEvaluate(fragment, expectationTerm)) {
                     final ITestExpectation expectation = provider.createExpectation(fragment, expectationTerm);
                     expectations.add(expectation);
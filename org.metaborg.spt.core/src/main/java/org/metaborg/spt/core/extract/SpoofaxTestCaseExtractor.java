@@ -17,18 +17,23 @@ import org.metaborg.core.syntax.ParseException;
 import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.mbt.core.model.expectations.NoExpectationError;
+import org.metaborg.mbt.core.run.TestTracer;
 import org.metaborg.spoofax.core.analysis.ISpoofaxAnalysisService;
 import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
+import org.metaborg.spoofax.core.unit.AnalyzeContrib;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
 import org.metaborg.spt.core.SPTUtil;
+import org.metaborg.util.concurrent.IClosableLock;
 import org.metaborg.util.iterators.Iterables2;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 import org.spoofax.terms.TermVisitor;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
 
@@ -37,14 +42,35 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
     private final ISpoofaxSyntaxService parseService;
     private final ISpoofaxAnalysisService analysisService;
     private final IContextService contextService;
-    private final ISpoofaxTestCaseBuilder testBuilder;
+    // builders are stateful, so each extraction gets its own to allow extracting suites in parallel
+    private final Provider<ISpoofaxTestCaseBuilder> builderProvider;
+    private final TestTracer tracer;
+    private final ISpoofaxUnitService unitService;
+    private final SPTDesugarer desugarer;
+
+    private volatile boolean skipAnalysis = false;
 
     @Inject public SpoofaxTestCaseExtractor(ISpoofaxSyntaxService parseService, ISpoofaxAnalysisService analysisService,
-        IContextService contextService, ISpoofaxTestCaseBuilder builder) {
+        IContextService contextService, Provider<ISpoofaxTestCaseBuilder> builderProvider, TestTracer tracer,
+        ISpoofaxUnitService unitService, SPTDesugarer desugarer) {
         this.parseService = parseService;
         this.analysisService = analysisService;
         this.contextService = contextService;
-        this.testBuilder = builder;
+        this.builderProvider = builderProvider;
+        this.tracer = tracer;
+        this.unitService = unitService;
+        this.desugarer = desugarer;
+    }
+
+    /**
+     * Set whether to skip the analysis of test suites by the SPT language.
+     * 
+     * The analysis of SPT only desugars the AST, so instead the AST is desugared by {@link SPTDesugarer}. This saves a
+     * context and a call into Stratego for each test suite. The analysis result of the extraction then has no context.
+     * Disabled by default.
+     */
+    public void setSkipAnalysis(boolean skipAnalysis) {
+        this.skipAnalysis = skipAnalysis;
     }
 
     @Override public ISpoofaxTestCaseExtractionResult extract(ISpoofaxInputUnit input, IProject project) {
@@ -63,7 +89,9 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
 
         final ISpoofaxParseUnit p;
         try {
+            final long start = tracer.begin();
             p = parseService.parse(input);
+            tracer.end(TestTracer.PARSE, testSuite, null, null, start);
             if(!p.valid()) {
                 // parse failed and couldn't recover
                 return new SpoofaxTestCaseExtractionResult(p, null, Iterables2.<IMessage>empty(),
@@ -86,7 +114,14 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
         return extract(p, project);
     }
 
-    @Override public ISpoofaxTestCaseExtractionResult extract(ISpoofaxParseUnit p, final IProject project) {
+    @Override public ISpoofaxTestCaseExtractionResult extract(ISpoofaxParseUnit p, IProject project) {
+        final long start = tracer.begin();
+        final ISpoofaxTestCaseExtractionResult result = extractParsed(p, project);
+        tracer.end(TestTracer.EXTRACT, p.input().source(), null, null, start);
+        return result;
+    }
+
+    private ISpoofaxTestCaseExtractionResult extractParsed(ISpoofaxParseUnit p, final IProject project) {
 
         final FileObject testSuite = p.input().source();
         if(testSuite == null) {
@@ -105,9 +140,17 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
         try {
             // even if parsing fails we can still analyze
             // the result will just be empty
-            IContext ctx = contextService.get(testSuite, project, p.input().langImpl());
-            a = analysisService.analyze(p, ctx).result();
-        } catch(ContextException | AnalysisException ae) {
+            if(skipAnalysis) {
+                a = desugar(p);
+            } else {
+                IContext ctx = contextService.get(testSuite, project, p.input().langImpl());
+                // the context is shared with other test suites of this project
+                try(IClosableLock lock = ctx.write()) {
+                    a = analysisService.analyze(p, ctx).result();
+                }
+            }
+        } catch(ContextException | AnalysisException | IllegalArgumentException ae) {
+            // the desugarer throws an IllegalArgumentException where the desugaring in Stratego fails
             // @formatter:off
             IMessage error = MessageBuilder.create()
                 .asAnalysis()
@@ -141,6 +184,7 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
         final List<IMessage> extraMessages = new LinkedList<>();
         final List<ITestCase> tests = new ArrayList<>();
         final List<String> startSymbolContainer = new ArrayList<>();
+        final ISpoofaxTestCaseBuilder testBuilder = builderProvider.get();
         new TermVisitor() {
             @Override public void preVisit(IStrategoTerm term) {
                 if(Term.isTermAppl(term)) {
@@ -191,4 +235,13 @@ public class SpoofaxTestCaseExtractor implements ISpoofaxTestCaseExtractor {
 
         return new SpoofaxTestCaseExtractionResult(p, a, extraMessages, tests, startSymbol);
     }
+
+    /**
+     * Create an analysis result for the given parse result without analyzing it, by desugaring its AST in Java.
+     */
+    private ISpoofaxAnalyzeUnit desugar(ISpoofaxParseUnit p) {
+        final IStrategoTerm ast = p.valid() && p.ast() != null ? desugarer.desugar(p.ast()) : null;
+        return unitService.analyzeUnit(p,
+            new AnalyzeContrib(true, p.success(), ast != null, ast, Iterables2.<IMessage>empty(), -1), null);
+    }
 }
@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.messages.MessageSeverity;
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
@@ -8,14 +10,15 @@ import org.metaborg.mbt.core.model.expectations.AnalysisMessageExpectation;
 import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 
-public class AnalyzeExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class AnalyzeExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final String ERR = "Errors";
     private static final String WARN = "Warnings";
@@ -27,6 +30,10 @@ public class AnalyzeExpectationProvider implements ISpoofaxTestExpectationProvid
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(ERR, WARN, NOTE);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return (ERR.equals(cons) || WARN.equals(cons) || NOTE.equals(cons)) && expectationTerm.getSubtermCount() == 1
@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.IFragment;
@@ -7,19 +9,20 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.mbt.core.model.expectations.ParseExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.metaborg.spt.core.extract.ISpoofaxFragmentBuilder;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
 import org.metaborg.spt.core.run.FragmentUtil;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
  * Implementation for the evaluation of the 'parse succeeds' and 'parse fails' test expectations.
  */
-public class ParseExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class ParseExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final ILogger logger = LoggerUtils.logger(ParseExpectationProvider.class);
 
@@ -40,6 +43,10 @@ public class ParseExpectationProvider implements ISpoofaxTestExpectationProvider
         this.fragmentUtil = fragmentUtil;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(SUC, FAIL, TO);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return cons != null && (SUC.equals(cons) || FAIL.equals(cons) || TO.equals(cons));
@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.IFragment;
@@ -7,15 +9,16 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
 import org.metaborg.spt.core.expectations.ParseToAtermExpectation;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
  * Deals with 'parse to [ATerm]' expectations, which are specific to Spoofax.
  */
-public class ParseToAtermExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class ParseToAtermExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     // ParseToAterm(ToAterm(ast))
     private static final String PARSE = "ParseToAterm";
@@ -27,6 +30,10 @@ public class ParseToAtermExpectationProvider implements ISpoofaxTestExpectationP
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(PARSE);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         boolean success = cons != null && PARSE.equals(cons) && expectationTerm.getSubtermCount() == 1;
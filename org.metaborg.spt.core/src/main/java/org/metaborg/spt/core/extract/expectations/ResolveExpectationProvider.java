@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.IFragment;
@@ -7,10 +9,11 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.mbt.core.model.expectations.ResolveExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
@@ -19,7 +22,7 @@ import com.google.inject.Inject;
  * Note that we require the test's analysis context to still be valid and open, as it is reused to run the resolver
  * service.
  */
-public class ResolveExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class ResolveExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final String RESOLVE = "Resolve";
     private static final String TO = "ResolveTo";
@@ -30,6 +33,10 @@ public class ResolveExpectationProvider implements ISpoofaxTestExpectationProvid
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(RESOLVE, TO);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return RESOLVE.equals(cons) && expectationTerm.getSubtermCount() == 1
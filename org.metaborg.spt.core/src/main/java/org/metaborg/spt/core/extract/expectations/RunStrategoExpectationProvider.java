@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.IFragment;
@@ -7,12 +9,13 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.mbt.core.model.expectations.RunStrategoExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.metaborg.spt.core.extract.ISpoofaxFragmentBuilder;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
 import org.metaborg.spt.core.run.FragmentUtil;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
@@ -20,7 +23,7 @@ import com.google.inject.Inject;
  * 
  * For now, we only run against the AST nodes of the analyzed AST.
  */
-public class RunStrategoExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class RunStrategoExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final String RUN = "Run";
     private static final String RUN_TO = "RunTo";
@@ -38,6 +41,10 @@ public class RunStrategoExpectationProvider implements ISpoofaxTestExpectationPr
         this.fragmentUtil = fragmentUtil;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(RUN, RUN_TO);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return RUN.equals(cons) && expectationTerm.getSubtermCount() == 1
@@ -1,5 +1,7 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
+
 import org.metaborg.core.source.ISourceLocation;
 import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.mbt.core.model.IFragment;
@@ -7,16 +9,17 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
 import org.metaborg.spt.core.expectations.RunStrategoToAtermExpectation;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
 /**
  * Runs Stratego strategies on selections or the entire test and compares results to an ATerm AST.
  */
-public class RunStrategoToAtermExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class RunStrategoToAtermExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     // RunToAterm("strategy", ToAterm(ast))
     private static final String RUN_TO = "RunToAterm";
@@ -28,6 +31,10 @@ public class RunStrategoToAtermExpectationProvider implements ISpoofaxTestExpect
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(RUN_TO);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return Term.isTermString(expectationTerm.getSubterm(0)) && RUN_TO.equals(cons)
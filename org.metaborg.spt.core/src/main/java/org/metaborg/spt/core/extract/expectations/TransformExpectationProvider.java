@@ -1,5 +1,6 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.metaborg.core.action.EndNamedGoal;
@@ -12,16 +13,17 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.mbt.core.model.expectations.TransformExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.metaborg.spt.core.extract.ISpoofaxFragmentBuilder;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
 import org.metaborg.spt.core.run.FragmentUtil;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
-public class TransformExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class TransformExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     private static final String TRANSFORM = "Transform";
 
@@ -47,6 +49,10 @@ public class TransformExpectationProvider implements ISpoofaxTestExpectationProv
         return goalNames;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(TRANSFORM);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return cons != null && TRANSFORM.equals(cons) && expectationTerm.getSubtermCount() == 2
@@ -1,5 +1,6 @@
 package org.metaborg.spt.core.extract.expectations;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.metaborg.core.action.EndNamedGoal;
@@ -12,13 +13,14 @@ import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
 import org.metaborg.spt.core.SPTUtil;
 import org.metaborg.spt.core.expectations.TransformToAtermExpectation;
-import org.metaborg.spt.core.extract.ISpoofaxTestExpectationProvider;
+import org.metaborg.spt.core.extract.ISpoofaxDeclaredExpectationProvider;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 import org.spoofax.terms.Term;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 
-public class TransformToAtermExpectationProvider implements ISpoofaxTestExpectationProvider {
+public class TransformToAtermExpectationProvider implements ISpoofaxDeclaredExpectationProvider {
 
     // TransformToAterm("goal", ToAterm(ast))
     private static final String TRANSFORM = "TransformToAterm";
@@ -29,6 +31,10 @@ public class TransformToAtermExpectationProvider implements ISpoofaxTestExpectat
         this.traceService = traceService;
     }
 
+    @Override public Collection<String> getConstructors() {
+        return ImmutableSet.of(TRANSFORM);
+    }
+
     @Override public boolean canEvaluate(IFragment inputFragment, IStrategoTerm expectationTerm) {
         String cons = SPTUtil.consName(expectationTerm);
         return cons != null && TRANSFORM.equals(cons) && expectationTerm.getSubtermCount() == 2
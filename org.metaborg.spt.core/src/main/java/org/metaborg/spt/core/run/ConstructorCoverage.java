@@ -0,0 +1,69 @@
+package org.metaborg.spt.core.run;
+
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Collects the names of the constructors in the ASTs of a test result.
+ *
+ * These are the constructors that a test depends on. If none of the productions for these constructors changed in the
+ * grammar of the language under test, the parse result of the test did not change either.
+ */
+public class ConstructorCoverage {
+
+    /**
+     * Get the names of all constructors in the parsed and analyzed ASTs of the given test result, including those of
+     * the fragments of its expectations.
+     *
+     * @param result
+     *            the result of running the test.
+     * @return the names of the constructors, or null if the fragment of the test did not parse successfully. In that
+     *         case, the test may depend on any part of the grammar.
+     */
+    public static @Nullable Set<String> of(ISpoofaxTestResult result) {
+        final ISpoofaxParseUnit p = result.getFragmentResult().getParseResult();
+        if(p == null || !p.success() || p.ast() == null) {
+            return null;
+        }
+
+        final Set<String> constructors = Sets.newHashSet();
+        collect(result.getFragmentResult(), constructors);
+        for(ISpoofaxTestExpectationOutput output : result.getExpectationResults()) {
+            for(ISpoofaxFragmentResult fragmentResult : output.getFragmentResults()) {
+                collect(fragmentResult, constructors);
+            }
+        }
+        return constructors;
+    }
+
+    private static void collect(ISpoofaxFragmentResult fragmentResult, Set<String> constructors) {
+        final ISpoofaxParseUnit p = fragmentResult.getParseResult();
+        if(p != null && p.valid()) {
+            collect(p.ast(), constructors);
+        }
+        final ISpoofaxAnalyzeUnit a = fragmentResult.getAnalysisResult();
+        if(a != null && a.valid() && a.hasAst()) {
+            collect(a.ast(), constructors);
+        }
+    }
+
+    private static void collect(@Nullable IStrategoTerm term, Set<String> constructors) {
+        if(term == null) {
+            return;
+        }
+        if(term.getTermType() == IStrategoTerm.APPL) {
+            constructors.add(((IStrategoAppl) term).getConstructor().getName());
+        }
+        for(IStrategoTerm subterm : term.getAllSubterms()) {
+            collect(subterm, constructors);
+        }
+    }
+}
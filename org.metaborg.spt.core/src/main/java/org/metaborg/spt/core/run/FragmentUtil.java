@@ -6,8 +6,7 @@ import javax.annotation.Nullable;
 
 import org.metaborg.core.analysis.AnalysisException;
 import org.metaborg.core.context.ContextException;
-import org.metaborg.core.context.IContextService;
-import org.metaborg.core.context.ITemporaryContext;
+import org.metaborg.core.context.IContext;
 import org.metaborg.core.language.ILanguage;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.language.ILanguageService;
@@ -19,6 +18,7 @@ import org.metaborg.core.syntax.ParseException;
 import org.metaborg.mbt.core.model.IFragment;
 import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.expectations.MessageUtil;
+import org.metaborg.mbt.core.run.ContextPool;
 import org.metaborg.mbt.core.run.IFragmentParserConfig;
 import org.metaborg.spoofax.core.analysis.ISpoofaxAnalysisService;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
@@ -40,15 +40,15 @@ public class FragmentUtil {
     private final ILanguageService langService;
     private final ISpoofaxTracingService traceService;
     private final ISpoofaxAnalysisService analysisService;
-    private final IContextService contextService;
+    private final ContextPool contextPool;
 
     @Inject public FragmentUtil(ISpoofaxFragmentParser fragmentParser, ILanguageService langService,
-        ISpoofaxTracingService traceService, ISpoofaxAnalysisService analysisService, IContextService contextService) {
+        ISpoofaxTracingService traceService, ISpoofaxAnalysisService analysisService, ContextPool contextPool) {
         this.fragmentParser = fragmentParser;
         this.langService = langService;
         this.traceService = traceService;
         this.analysisService = analysisService;
-        this.contextService = contextService;
+        this.contextPool = contextPool;
     }
 
     /**
@@ -194,8 +194,10 @@ public class FragmentUtil {
         if(lang == null) {
             return null;
         }
-        try(ITemporaryContext ctx =
-            contextService.getTemporary(test.getResource(), test.getProject(), lang.activeImpl())) {
+        final ILanguageImpl impl = lang.activeImpl();
+        IContext ctx = null;
+        try {
+            ctx = contextPool.get(test.getResource(), test.getProject(), impl);
             ISpoofaxAnalyzeUnit a = analysisService.analyze(p, ctx).result();
             if(a.success() && a.hasAst()) {
                 return a;
@@ -213,6 +215,10 @@ public class FragmentUtil {
         } catch(AnalysisException e) {
             messages.add(MessageFactory.newAnalysisError(test.getResource(), fragment.getRegion(),
                 "Analysis of the fragment failed with an unexpected exception.", e));
+        } finally {
+            if(ctx != null) {
+                contextPool.release(test.getProject(), impl, ctx);
+            }
         }
         return null;
     }
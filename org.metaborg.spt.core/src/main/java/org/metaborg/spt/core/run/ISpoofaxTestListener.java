@@ -0,0 +1,36 @@
+package org.metaborg.spt.core.run;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.mbt.core.model.ITestCase;
+
+/**
+ * Receives the progress of a test run on Spoofax languages as it happens, one test suite at a time.
+ *
+ * The streaming {@code runAll} method of {@link SpoofaxTestCaseRunner} only reports the test events. The suite events
+ * are reported by whoever runs the suites, like the command line runner.
+ */
+public interface ISpoofaxTestListener {
+    /**
+     * Called before any test of the given test suite is run.
+     */
+    public void suiteStarted(FileObject testSuite);
+
+    /**
+     * Called right before the given test is run.
+     * 
+     * @see org.metaborg.mbt.core.run.ITestListener#testStarted(ITestCase)
+     */
+    public void testStarted(ITestCase test);
+
+    /**
+     * Called with the result of a test.
+     * 
+     * @see org.metaborg.mbt.core.run.ITestListener#testFinished(org.metaborg.mbt.core.run.ITestResult)
+     */
+    public void testFinished(ISpoofaxTestResult result);
+
+    /**
+     * Called after all tests of the given test suite are done.
+     */
+    public void suiteFinished(FileObject testSuite);
+}
@@ -1,35 +1,71 @@
 package org.metaborg.spt.core.run;
 
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentMap;
 
 import org.metaborg.mbt.core.model.expectations.ITestExpectation;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
 import com.google.inject.ConfigurationException;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.inject.util.Types;
 
+/**
+ * Looks up evaluators through a table from expectation class to evaluator.
+ *
+ * The table is filled with an instance of each evaluator bound in the injector when this service is created, so each
+ * evaluator is instantiated only once. Expectation classes that are not in the table are looked up in the injector
+ * the first time they are encountered. The outcome of that, including a miss, is added to the table as well.
+ */
 public class SpoofaxExpectationEvaluatorService implements ISpoofaxExpectationEvaluatorService {
 
     private static final ILogger logger = LoggerUtils.logger(SpoofaxExpectationEvaluatorService.class);
 
     private final Injector injector;
+    // absent if there is no evaluator for the expectation class
+    private final ConcurrentMap<Class<?>, Optional<ISpoofaxExpectationEvaluator<?>>> evaluators =
+        Maps.newConcurrentMap();
 
     @Inject public SpoofaxExpectationEvaluatorService(Injector injector) {
         this.injector = injector;
+        for(Key<?> key : injector.getAllBindings().keySet()) {
+            final Type type = key.getTypeLiteral().getType();
+            if(key.getAnnotationType() != null || !(type instanceof ParameterizedType)
+                || ((ParameterizedType) type).getRawType() != ISpoofaxExpectationEvaluator.class) {
+                continue;
+            }
+            final Type expectationType = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if(expectationType instanceof Class) {
+                final ISpoofaxExpectationEvaluator<?> evaluator =
+                    (ISpoofaxExpectationEvaluator<?>) injector.getInstance(key);
+                evaluators.put((Class<?>) expectationType, Optional.<ISpoofaxExpectationEvaluator<?>>of(evaluator));
+            }
+        }
     }
 
     @SuppressWarnings("unchecked") @Override public <E extends ITestExpectation> ISpoofaxExpectationEvaluator<E>
         lookup(E expectation) {
-        ParameterizedType evaType =
-            Types.newParameterizedType(ISpoofaxExpectationEvaluator.class, expectation.getClass());
+        final Class<?> expectationType = expectation.getClass();
+        Optional<ISpoofaxExpectationEvaluator<?>> evaluator = evaluators.get(expectationType);
+        if(evaluator == null) {
+            evaluator = Optional.<ISpoofaxExpectationEvaluator<?>>fromNullable(find(expectationType));
+            evaluators.putIfAbsent(expectationType, evaluator);
+        }
+        return (ISpoofaxExpectationEvaluator<E>) evaluator.orNull();
+    }
+
+    private ISpoofaxExpectationEvaluator<?> find(Class<?> expectationType) {
+        ParameterizedType evaType = Types.newParameterizedType(ISpoofaxExpectationEvaluator.class, expectationType);
         try {
-            return (ISpoofaxExpectationEvaluator<E>) injector.getInstance(Key.get(evaType));
+            return (ISpoofaxExpectationEvaluator<?>) injector.getInstance(Key.get(evaType));
         } catch(ConfigurationException e) {
-            logger.info("Unable to find an evaluator for expectation of type {}", e, expectation.getClass());
+            logger.info("Unable to find an evaluator for expectation of type {}", expectationType);
             return null;
         }
     }
@@ -0,0 +1,459 @@
+package org.metaborg.spt.core.run;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.messages.IMessage;
+import org.metaborg.core.messages.MessageBuilder;
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.core.syntax.ParseException;
+import org.metaborg.mbt.core.model.IFragment;
+import org.metaborg.mbt.core.model.IFragment.FragmentPiece;
+import org.metaborg.mbt.core.run.IFragmentParserConfig;
+import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
+import org.metaborg.spoofax.core.syntax.JSGLRParserConfiguration;
+import org.metaborg.spoofax.core.terms.ITermFactoryService;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spoofax.core.unit.ISpoofaxUnitService;
+import org.metaborg.spoofax.core.unit.ParseContrib;
+import org.metaborg.spt.core.SPTUtil;
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoInt;
+import org.spoofax.interpreter.terms.IStrategoList;
+import org.spoofax.interpreter.terms.IStrategoReal;
+import org.spoofax.interpreter.terms.IStrategoString;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.jsglr.client.imploder.IToken;
+import org.spoofax.jsglr.client.imploder.ImploderAttachment;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+
+/**
+ * Parser for fragments of non-layout sensitive languages.
+ *
+ * Unlike the {@link SpoofaxWhitespaceFragmentParser}, this parser does not pad the fragment with whitespace up to its
+ * position in the test suite. It only parses the text of the fragment, with the SPT specific characters between the
+ * pieces of the fragment replaced by a single space, and shifts the offsets of the AST nodes and messages of the parse
+ * result to their location in the test suite afterwards. This way, the cost of parsing a fragment does not depend on
+ * how far into the test suite the fragment is.
+ *
+ * Only character offsets are relocated. Line and column numbers stay relative to the fragment.
+ *
+ * As the parsed text does not depend on the position of the fragment, fragments with the same text are only parsed
+ * once. The parse results are kept in a bounded cache. The fragment that was parsed gets the parse result itself, other
+ * fragments with the same text get a relocated copy of it. A parse that timed out is not cached, as it may succeed when
+ * the machine is less busy.
+ */
+public class SpoofaxRelocatingFragmentParser implements ISpoofaxFragmentParser {
+
+    private final ISpoofaxInputUnitService inputService;
+    private final ISpoofaxSyntaxService parseService;
+    private final ISpoofaxUnitService unitService;
+    private final ITermFactoryService termFactoryService;
+
+    private volatile Cache<ParseKey, CachedParse> parseCache = newCache(1024);
+
+    @Inject public SpoofaxRelocatingFragmentParser(ISpoofaxInputUnitService inputService,
+        ISpoofaxSyntaxService parseService, ISpoofaxUnitService unitService, ITermFactoryService termFactoryService) {
+        this.inputService = inputService;
+        this.parseService = parseService;
+        this.unitService = unitService;
+        this.termFactoryService = termFactoryService;
+    }
+
+    /**
+     * Set the maximum number of parse results to keep in the cache.
+     *
+     * Clears the cache and its statistics.
+     *
+     * @param size
+     *            the maximum number of cached parse results. 0 disables the cache.
+     */
+    public void setCacheSize(int size) {
+        parseCache = newCache(Math.max(0, size));
+    }
+
+    /**
+     * Get the hit and miss counts of the parse cache.
+     */
+    public CacheStats cacheStats() {
+        return parseCache.stats();
+    }
+
+    @Override public ISpoofaxParseUnit parse(IFragment fragment, ILanguageImpl language, ILanguageImpl dialect,
+        IFragmentParserConfig config) throws ParseException {
+        if(config == null || !(config instanceof ISpoofaxFragmentParserConfig)) {
+            return parse(fragment, language, dialect, (ISpoofaxFragmentParserConfig) null);
+        } else {
+            return parse(fragment, language, dialect, (ISpoofaxFragmentParserConfig) config);
+        }
+    }
+
+    @Override public ISpoofaxParseUnit parse(IFragment fragment, ILanguageImpl language, ILanguageImpl dialect,
+        ISpoofaxFragmentParserConfig config) throws ParseException {
+        final OffsetMap offsets = new OffsetMap();
+        final String text = getFragmentText(fragment, offsets);
+
+        final JSGLRParserConfiguration parseConfig =
+            config == null ? null : config.getParserConfigForLanguage(language);
+        final ISpoofaxInputUnit input;
+        if(parseConfig == null) {
+            input = inputService.inputUnit(fragment.getResource(), text, language, dialect);
+        } else {
+            input = inputService.inputUnit(text, language, dialect, parseConfig);
+        }
+
+        final FileObject resource = fragment.getResource();
+        final String filename = resource == null ? null : resource.getName().toString();
+        CachedParse cached;
+        try {
+            cached = parseCache.get(new ParseKey(language, dialect, parseConfig, text), new Callable<CachedParse>() {
+                @Override public CachedParse call() throws ParseException, TimedOutParse {
+                    final ISpoofaxParseUnit p = parseService.parse(input);
+                    if(p.valid() && p.ast() != null) {
+                        // relocate before the result is cached, so other fragments never see it half relocated
+                        relocate(p.ast(), filename, offsets, Sets.<IStrategoTerm>newIdentityHashSet());
+                    }
+                    if(SPTUtil.isParseTimeout(p)) {
+                        // keeps the result out of the cache
+                        throw new TimedOutParse(new CachedParse(p, offsets));
+                    }
+                    return new CachedParse(p, offsets);
+                }
+            });
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof TimedOutParse) {
+                cached = ((TimedOutParse) e.getCause()).parse;
+            } else if(e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            } else {
+                throw new ParseException(input, e.getCause());
+            }
+        }
+
+        final ISpoofaxParseUnit p = cached.unit;
+        IStrategoTerm ast = null;
+        if(p.valid() && p.ast() != null) {
+            if(cached.offsets == offsets) {
+                // this fragment was parsed, so the AST is already relocated
+                ast = p.ast();
+            } else {
+                ast = copy(p.ast(), termFactoryService.getGeneric(), filename, cached.offsets, offsets);
+            }
+        }
+
+        final List<IMessage> messages = Lists.newLinkedList();
+        for(IMessage message : p.messages()) {
+            messages.add(relocate(message, resource, offsets));
+        }
+
+        return unitService.parseUnit(input, new ParseContrib(p.valid(), p.success(), ast, messages, p.duration()));
+    }
+
+    /**
+     * Get the text that will be parsed for the given fragment.
+     *
+     * The pieces of the fragment are concatenated. If there was any text in between two pieces in the test suite, it
+     * is replaced by a single space.
+     *
+     * @param fragment
+     *            the fragment.
+     * @param offsets
+     *            the map to which the offset of each piece in the returned text and in the test suite is added.
+     * @return the text to parse.
+     */
+    protected String getFragmentText(IFragment fragment, OffsetMap offsets) {
+        final StringBuilder fragmentTextBuilder = new StringBuilder();
+        int suiteEnd = -1;
+        for(FragmentPiece piece : fragment.getText()) {
+            if(fragmentTextBuilder.length() > 0 && piece.startOffset > suiteEnd) {
+                // the space maps to the first character after the previous piece, so it needs no entry of its own
+                fragmentTextBuilder.append(' ');
+            }
+            offsets.add(fragmentTextBuilder.length(), piece.startOffset);
+            fragmentTextBuilder.append(piece.text);
+            suiteEnd = piece.startOffset + piece.text.length();
+        }
+        return fragmentTextBuilder.toString();
+    }
+
+    /**
+     * Create a copy of the given parse message, with its region shifted to the test suite and its source set to the
+     * test suite.
+     *
+     * The messages of a cached parse result may have come from another test suite, so the source is always replaced.
+     */
+    private IMessage relocate(IMessage message, @Nullable FileObject resource, OffsetMap offsets) {
+        final MessageBuilder b = MessageBuilder.create();
+        b.withMessage(message.message());
+        b.withSeverity(message.severity());
+        b.withType(message.type());
+        final ISourceRegion region = message.region();
+        if(region != null) {
+            final int start = offsets.toSuiteOffset(region.startOffset());
+            final int end =
+                region.endOffset() < region.startOffset() ? start - 1 : offsets.toSuiteOffset(region.endOffset());
+            b.withRegion(new SourceRegion(start, end));
+        }
+        if(resource != null) {
+            b.withSource(resource);
+        } else if(message.source() != null) {
+            b.withSource(message.source());
+        }
+        if(message.exception() != null) {
+            b.withException(message.exception());
+        }
+        return b.build();
+    }
+
+    /**
+     * Shift the positions of the given freshly parsed term and its subterms to the test suite.
+     *
+     * @param visited
+     *            the terms that were already relocated, in case the parser shared a term.
+     */
+    protected void relocate(IStrategoTerm term, @Nullable String filename, OffsetMap offsets,
+        Set<IStrategoTerm> visited) {
+        if(!visited.add(term)) {
+            return;
+        }
+        for(int i = 0; i < term.getSubtermCount(); i++) {
+            relocate(term.getSubterm(i), filename, offsets, visited);
+        }
+        final ImploderAttachment imploder = ImploderAttachment.get(term);
+        if(imploder != null) {
+            term.putAttachment(position(imploder, filename, null, offsets));
+        }
+    }
+
+    /**
+     * Copy the given relocated term, with its position shifted from one fragment to another.
+     *
+     * All attachments of the term are kept, only its position is replaced.
+     */
+    protected IStrategoTerm copy(IStrategoTerm term, ITermFactory factory, @Nullable String filename, OffsetMap from,
+        OffsetMap to) {
+        final IStrategoTerm[] kids = new IStrategoTerm[term.getSubtermCount()];
+        for(int i = 0; i < kids.length; i++) {
+            kids[i] = copy(term.getSubterm(i), factory, filename, from, to);
+        }
+        final IStrategoList annos = term.getAnnotations();
+        IStrategoTerm copy;
+        switch(term.getTermType()) {
+            case IStrategoTerm.APPL:
+                copy = factory.makeAppl(((IStrategoAppl) term).getConstructor(), kids, annos);
+                break;
+            case IStrategoTerm.LIST:
+                copy = factory.makeList(kids, annos);
+                break;
+            case IStrategoTerm.TUPLE:
+                copy = factory.makeTuple(kids, annos);
+                break;
+            case IStrategoTerm.INT:
+                copy = factory.annotateTerm(factory.makeInt(((IStrategoInt) term).intValue()), annos);
+                break;
+            case IStrategoTerm.REAL:
+                copy = factory.annotateTerm(factory.makeReal(((IStrategoReal) term).realValue()), annos);
+                break;
+            case IStrategoTerm.STRING:
+                copy = factory.annotateTerm(factory.makeString(((IStrategoString) term).stringValue()), annos);
+                break;
+            default:
+                // no position to relocate
+                return term;
+        }
+        copy = factory.replaceTerm(copy, term);
+
+        final ImploderAttachment imploder = ImploderAttachment.get(term);
+        if(imploder != null) {
+            copy.putAttachment(position(imploder, filename, from, to));
+        }
+        return copy;
+    }
+
+    /**
+     * Create a position attachment with the offsets of the given attachment shifted to the test suite.
+     *
+     * @param from
+     *            the offsets to which the given attachment was relocated, or null if it was not relocated yet.
+     * @param to
+     *            the offsets to shift the attachment to.
+     */
+    private static ImploderAttachment position(ImploderAttachment imploder, @Nullable String filename,
+        @Nullable OffsetMap from, OffsetMap to) {
+        final IToken left = imploder.getLeftToken();
+        final IToken right = imploder.getRightToken();
+        final int fragmentStart = from == null ? left.getStartOffset() : from.toFragmentOffset(left.getStartOffset());
+        final int start = to.toSuiteOffset(fragmentStart);
+        // empty nodes end right before they start
+        final int end;
+        if(right.getEndOffset() < left.getStartOffset()) {
+            end = start - 1;
+        } else {
+            final int fragmentEnd = from == null ? right.getEndOffset() : from.toFragmentOffset(right.getEndOffset());
+            end = to.toSuiteOffset(fragmentEnd);
+        }
+        return ImploderAttachment.createCompactPositionAttachment(filename, left.getLine(), left.getColumn(), start,
+            end);
+    }
+
+    private static Cache<ParseKey, CachedParse> newCache(int size) {
+        return CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+    }
+
+    /**
+     * Thrown from the loader of the cache for a parse that timed out, so that it is not cached.
+     */
+    private static class TimedOutParse extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final CachedParse parse;
+
+        public TimedOutParse(CachedParse parse) {
+            super(null, null, false, false);
+            this.parse = parse;
+        }
+    }
+
+    /**
+     * A cached parse result, with the AST relocated to the fragment that was parsed.
+     */
+    private static class CachedParse {
+        private final ISpoofaxParseUnit unit;
+        private final OffsetMap offsets;
+
+        public CachedParse(ISpoofaxParseUnit unit, OffsetMap offsets) {
+            this.unit = unit;
+            this.offsets = offsets;
+        }
+    }
+
+    /**
+     * Identifies a parse of a fragment text.
+     *
+     * Parser configurations are compared by their settings, as a new configuration is created for every test suite. The
+     * components of the language are part of the key, so that a reloaded language does not get stale results.
+     */
+    private static class ParseKey {
+        private final ILanguageImpl language;
+        private final List<ILanguageComponent> components;
+        private final @Nullable ILanguageImpl dialect;
+        private final @Nullable JSGLRParserConfiguration config;
+        private final String text;
+
+        public ParseKey(ILanguageImpl language, @Nullable ILanguageImpl dialect,
+            @Nullable JSGLRParserConfiguration config, String text) {
+            this.language = language;
+            this.components = ImmutableList.copyOf(language.components());
+            this.dialect = dialect;
+            this.config = config;
+            this.text = text;
+        }
+
+        @Override public boolean equals(Object obj) {
+            if(!(obj instanceof ParseKey)) {
+                return false;
+            }
+            final ParseKey other = (ParseKey) obj;
+            return language.equals(other.language) && components.equals(other.components)
+                && Objects.equal(dialect, other.dialect)
+                && configEquals(config, other.config) && text.equals(other.text);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hashCode(language, dialect, config == null ? null : config.overridingStartSymbol, text);
+        }
+
+        private static boolean configEquals(@Nullable JSGLRParserConfiguration a,
+            @Nullable JSGLRParserConfiguration b) {
+            if(a == null || b == null) {
+                return a == b;
+            }
+            return a.implode == b.implode && a.recovery == b.recovery && a.completion == b.completion
+                && a.timeout == b.timeout && Objects.equal(a.overridingStartSymbol, b.overridingStartSymbol);
+        }
+    }
+
+    /**
+     * Maps offsets in the parsed text of a fragment to offsets in the test suite.
+     */
+    protected static class OffsetMap {
+        private int[] fragmentOffsets = new int[4];
+        private int[] suiteOffsets = new int[4];
+        private int size = 0;
+
+        /**
+         * Register a piece of the fragment.
+         *
+         * Pieces have to be added in the order in which they occur in the fragment.
+         *
+         * @param fragmentOffset
+         *            the offset of the piece in the parsed text.
+         * @param suiteOffset
+         *            the offset of the piece in the test suite.
+         */
+        public void add(int fragmentOffset, int suiteOffset) {
+            if(size > 0 && fragmentOffsets[size - 1] == fragmentOffset) {
+                // the previous piece was empty
+                suiteOffsets[size - 1] = suiteOffset;
+                return;
+            }
+            if(size == fragmentOffsets.length) {
+                fragmentOffsets = Arrays.copyOf(fragmentOffsets, size * 2);
+                suiteOffsets = Arrays.copyOf(suiteOffsets, size * 2);
+            }
+            fragmentOffsets[size] = fragmentOffset;
+            suiteOffsets[size] = suiteOffset;
+            size++;
+        }
+
+        /**
+         * Get the offset in the test suite of the given offset in the parsed text.
+         */
+        public int toSuiteOffset(int fragmentOffset) {
+            if(size == 0 || fragmentOffset < 0) {
+                return fragmentOffset;
+            }
+            int i = Arrays.binarySearch(fragmentOffsets, 0, size, fragmentOffset);
+            if(i < 0) {
+                // the insertion point is the first piece after the offset
+                i = Math.max(0, -i - 2);
+            }
+            return suiteOffsets[i] + fragmentOffset - fragmentOffsets[i];
+        }
+
+        /**
+         * Get the offset in the parsed text of the given offset in the test suite.
+         */
+        public int toFragmentOffset(int suiteOffset) {
+            if(size == 0 || suiteOffset < 0) {
+                return suiteOffset;
+            }
+            int i = Arrays.binarySearch(suiteOffsets, 0, size, suiteOffset);
+            if(i < 0) {
+                // the insertion point is the first piece after the offset
+                i = Math.max(0, -i - 2);
+            }
+            return fragmentOffsets[i] + suiteOffset - suiteOffsets[i];
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package org.metaborg.spt.core.run;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
 import org.metaborg.core.context.IContext;
-import org.metaborg.core.context.IContextService;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.core.messages.MessageFactory;
@@ -14,14 +15,23 @@ import org.metaborg.core.project.IProject;
 import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.TestPhase;
 import org.metaborg.mbt.core.model.expectations.ITestExpectation;
+import org.metaborg.mbt.core.run.CancellationToken;
+import org.metaborg.mbt.core.run.ContextPool;
+import org.metaborg.mbt.core.run.ICancellationToken;
 import org.metaborg.mbt.core.run.IFragmentParserConfig;
+import org.metaborg.mbt.core.run.ITestListener;
 import org.metaborg.mbt.core.run.ITestResult;
+import org.metaborg.mbt.core.run.PhaseTimer;
+import org.metaborg.mbt.core.run.PhaseTiming;
 import org.metaborg.mbt.core.run.TestCaseRunner;
+import org.metaborg.mbt.core.run.TestTracer;
+import org.metaborg.mbt.core.run.TestWatchdog;
 import org.metaborg.spoofax.core.analysis.ISpoofaxAnalysisService;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnitUpdate;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 public class SpoofaxTestCaseRunner
@@ -30,9 +40,10 @@ public class SpoofaxTestCaseRunner
 
     private final ISpoofaxExpectationEvaluatorService evaluatorService;
 
-    @Inject public SpoofaxTestCaseRunner(ISpoofaxAnalysisService analysisService, IContextService contextService,
-        ISpoofaxFragmentParser fragmentParser, ISpoofaxExpectationEvaluatorService evaluatorService) {
-        super(analysisService, contextService, fragmentParser);
+    @Inject public SpoofaxTestCaseRunner(ISpoofaxAnalysisService analysisService, ContextPool contextPool,
+        ISpoofaxFragmentParser fragmentParser, ISpoofaxExpectationEvaluatorService evaluatorService,
+        TestTracer tracer, TestWatchdog watchdog) {
+        super(analysisService, contextPool, fragmentParser, tracer, watchdog);
         this.evaluatorService = evaluatorService;
     }
 
@@ -44,9 +55,68 @@ public class SpoofaxTestCaseRunner
         return (ISpoofaxTestResult) res;
     }
 
+    @Override public List<ISpoofaxTestResult> runAll(IProject project, Iterable<ITestCase> tests,
+        ILanguageImpl languageUnderTest, @Nullable ILanguageImpl dialectUnderTest,
+        @Nullable IFragmentParserConfig fragmentParseConfig) {
+        return runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, null);
+    }
+
+    @Override public List<ISpoofaxTestResult> runAll(IProject project, Iterable<ITestCase> tests,
+        ILanguageImpl languageUnderTest, @Nullable ILanguageImpl dialectUnderTest,
+        @Nullable IFragmentParserConfig fragmentParseConfig, @Nullable ExecutorService executor) {
+        List<? extends ITestResult<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>> res =
+            super.runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, executor);
+        List<ISpoofaxTestResult> results = Lists.newArrayListWithCapacity(res.size());
+        for(ITestResult<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit> r : res) {
+            // safe, as each result was created by our own run method
+            results.add((ISpoofaxTestResult) r);
+        }
+        return results;
+    }
+
+    /**
+     * Run the given tests, and pass each result to the given listener as soon as it is available.
+     * 
+     * Only the test events of the listener are called.
+     * 
+     * @see TestCaseRunner#runAll(IProject, Iterable, ILanguageImpl, ILanguageImpl, IFragmentParserConfig,
+     *      ExecutorService, ITestListener)
+     */
+    public void runAll(IProject project, Iterable<ITestCase> tests, ILanguageImpl languageUnderTest,
+        @Nullable ILanguageImpl dialectUnderTest, @Nullable IFragmentParserConfig fragmentParseConfig,
+        @Nullable ExecutorService executor, ISpoofaxTestListener listener) {
+        runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, executor, listener,
+            CancellationToken.NEVER);
+    }
+
+    /**
+     * Run the given tests until they are done or the run is cancelled, and pass each result to the given listener as
+     * soon as it is available.
+     * 
+     * Only the test events of the listener are called.
+     * 
+     * @see TestCaseRunner#runAll(IProject, Iterable, ILanguageImpl, ILanguageImpl, IFragmentParserConfig,
+     *      ExecutorService, ITestListener, ICancellationToken)
+     */
+    public void runAll(IProject project, Iterable<ITestCase> tests, ILanguageImpl languageUnderTest,
+        @Nullable ILanguageImpl dialectUnderTest, @Nullable IFragmentParserConfig fragmentParseConfig,
+        @Nullable ExecutorService executor, final ISpoofaxTestListener listener, ICancellationToken cancel) {
+        super.runAll(project, tests, languageUnderTest, dialectUnderTest, fragmentParseConfig, executor,
+            new ITestListener<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>() {
+                @Override public void testStarted(ITestCase test) {
+                    listener.testStarted(test);
+                }
+
+                @Override public void testFinished(ITestResult<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit> result) {
+                    // safe, as each result was created by our own run method
+                    listener.testFinished((ISpoofaxTestResult) result);
+                }
+            }, cancel);
+    }
+
     @Override protected ISpoofaxTestResult evaluateExpectations(ITestCase test, ISpoofaxParseUnit parseRes,
         ISpoofaxAnalyzeUnit analysisRes, ILanguageImpl languageUnderTest, List<IMessage> messages,
-        @Nullable IFragmentParserConfig fragmentParseConfig) {
+        List<PhaseTiming> timings, @Nullable IFragmentParserConfig fragmentParseConfig, ICancellationToken cancel) {
         boolean success = true;
 
         List<ISpoofaxTestExpectationOutput> expectationOutputs = new ArrayList<>();
@@ -55,6 +125,12 @@ public class SpoofaxTestCaseRunner
             success = parseRes.success();
         } else {
             for(ITestExpectation expectation : test.getExpectations()) {
+                if(cancel.isCancelled()) {
+                    messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                        "The test run was cancelled before all expectations were evaluated.", null));
+                    success = false;
+                    break;
+                }
                 ISpoofaxExpectationEvaluator<ITestExpectation> evaluator = evaluatorService.lookup(expectation);
                 if(evaluator == null) {
                     messages.add(MessageFactory.newAnalysisError(test.getResource(), expectation.region(),
@@ -65,8 +141,14 @@ public class SpoofaxTestCaseRunner
                     SpoofaxTestExpectationInput input = new SpoofaxTestExpectationInput(test, languageUnderTest,
                         new SpoofaxFragmentResult(test.getFragment(), parseRes, analysisRes,
                             analysisRes == null ? null : analysisRes.context()),
-                        fragmentParseConfig);
+                        fragmentParseConfig, cancel);
+                    final String expectationType = expectation.getClass().getSimpleName();
+                    watchdog.phase(EVALUATE_PHASE + expectationType);
+                    PhaseTimer timer = PhaseTimer.start();
+                    long start = tracer.begin();
                     ISpoofaxTestExpectationOutput output = evaluator.evaluate(input, expectation);
+                    timings.add(timer.stop(EVALUATE_PHASE + expectationType));
+                    tracer.end(TestTracer.EVALUATE, test.getResource(), test.getDescription(), expectationType, start);
                     if(!output.isSuccessful()) {
                         success = false;
                     }
@@ -75,7 +157,40 @@ public class SpoofaxTestCaseRunner
             }
         }
         return new SpoofaxTestResult(test, success, messages,
-            new SpoofaxFragmentResult(test.getFragment(), parseRes, analysisRes, null), expectationOutputs);
+            new SpoofaxFragmentResult(test.getFragment(), parseRes, analysisRes, null), expectationOutputs, timings);
+    }
+
+    @Override protected ISpoofaxTestResult timedOutResult(ITestCase test, List<IMessage> messages) {
+        return new SpoofaxTestResult(test, false, messages,
+            new SpoofaxFragmentResult(test.getFragment(), null, null, null),
+            Collections.<ISpoofaxTestExpectationOutput>emptyList(), Collections.<PhaseTiming>emptyList(), true);
+    }
+
+    @Override protected ISpoofaxTestResult timedResult(ITestResult<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit> res,
+        long wallTime) {
+        // safe, as the result was created by this runner
+        final ISpoofaxTestResult result = (ISpoofaxTestResult) res;
+        return new SpoofaxTestResult(result.getTest(), result.isSuccessful(), result.getMessages(),
+            result.getFragmentResult(), result.getExpectationResults(), result.getTimings(), result.isTimedOut(),
+            wallTime);
+    }
+
+    @Override protected boolean parseTimedOut(ISpoofaxParseUnit parseRes) {
+        return SPTUtil.isParseTimeout(parseRes);
+    }
+
+    @Override protected ISpoofaxTestResult leanResult(ITestResult<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit> res) {
+        // safe, as the result was created by our own evaluateExpectations method
+        final ISpoofaxTestResult result = (ISpoofaxTestResult) res;
+        final List<ISpoofaxTestExpectationOutput> outputs = Lists.newArrayList();
+        for(ISpoofaxTestExpectationOutput output : result.getExpectationResults()) {
+            outputs.add(new SpoofaxTestExpectationOutput(output.isSuccessful(), output.getMessages(),
+                Collections.<ISpoofaxFragmentResult>emptyList()));
+        }
+        final ITestCase test = result.getTest();
+        return new SpoofaxTestResult(test, result.isSuccessful(), result.getMessages(),
+            new SpoofaxFragmentResult(test.getFragment(), null, null, null), outputs, result.getTimings(),
+            result.isTimedOut());
     }
 
     @Override protected TestPhase requiredPhase(ITestCase test, IContext languageUnderTestCtx) {
@@ -2,6 +2,7 @@ package org.metaborg.spt.core.run;
 
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.mbt.core.model.ITestCase;
+import org.metaborg.mbt.core.run.ICancellationToken;
 import org.metaborg.mbt.core.run.IFragmentParserConfig;
 import org.metaborg.mbt.core.run.TestExpectationInput;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
@@ -15,4 +16,9 @@ public class SpoofaxTestExpectationInput extends TestExpectationInput<ISpoofaxPa
         super(testCase, languageUnderTest, fragmentResult, cfg);
     }
 
+    public SpoofaxTestExpectationInput(ITestCase testCase, ILanguageImpl languageUnderTest,
+        ISpoofaxFragmentResult fragmentResult, IFragmentParserConfig cfg, ICancellationToken cancel) {
+        super(testCase, languageUnderTest, fragmentResult, cfg, cancel);
+    }
+
 }
@@ -1,8 +1,12 @@
 package org.metaborg.spt.core.run;
 
+import java.util.Collections;
+import java.util.List;
+
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.run.ITestExpectationOutput;
+import org.metaborg.mbt.core.run.PhaseTiming;
 import org.metaborg.mbt.core.run.TestResult;
 import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
@@ -17,8 +21,27 @@ public class SpoofaxTestResult extends TestResult<ISpoofaxParseUnit, ISpoofaxAna
 
     public SpoofaxTestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
         ISpoofaxFragmentResult fragmentResult, Iterable<ISpoofaxTestExpectationOutput> results) {
+        this(test, success, messages, fragmentResult, results, Collections.<PhaseTiming>emptyList());
+    }
+
+    public SpoofaxTestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        ISpoofaxFragmentResult fragmentResult, Iterable<ISpoofaxTestExpectationOutput> results,
+        List<PhaseTiming> timings) {
+        this(test, success, messages, fragmentResult, results, timings, false);
+    }
+
+    public SpoofaxTestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        ISpoofaxFragmentResult fragmentResult, Iterable<ISpoofaxTestExpectationOutput> results,
+        List<PhaseTiming> timings, boolean timedOut) {
+        this(test, success, messages, fragmentResult, results, timings, timedOut, -1);
+    }
+
+    public SpoofaxTestResult(ITestCase test, boolean success, Iterable<IMessage> messages,
+        ISpoofaxFragmentResult fragmentResult, Iterable<ISpoofaxTestExpectationOutput> results,
+        List<PhaseTiming> timings, boolean timedOut, long wallTime) {
         super(test, success, messages, fragmentResult,
-            Lists.<ITestExpectationOutput<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>>newLinkedList(results));
+            Lists.<ITestExpectationOutput<ISpoofaxParseUnit, ISpoofaxAnalyzeUnit>>newLinkedList(results), timings,
+            timedOut, wallTime);
         this.results = results;
         this.fragmentResult = fragmentResult;
     }
@@ -0,0 +1,147 @@
+package org.metaborg.spt.core.run;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.MetaborgException;
+import org.metaborg.core.context.IContext;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.mbt.core.run.TestTracer;
+import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.spoofax.interpreter.library.IOperatorRegistry;
+import org.spoofax.interpreter.library.ssl.SSLLibrary;
+import org.strategoxt.HybridInterpreter;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+
+/**
+ * A pool of Stratego runtimes for the languages under test.
+ *
+ * Creating a runtime is expensive, so expectations that run strategies borrow one from this pool and return it when
+ * they are done. Runtimes are pooled per language component and context location, as the runtime's working directory
+ * depends on the latter.
+ *
+ * A returned runtime is reset by clearing its current term, its context object, its dynamic rules and its hashtables,
+ * and is handed out again with the context of the next borrower. Other state that strategies can leave behind, such as
+ * the counter of {@code new} or the state of Java primitives, is kept, so tests that share a runtime are not completely
+ * isolated. Therefore, pooling is experimental and disabled by default. Use {@link #setMaxIdle(int)} to enable it.
+ */
+public class StrategoRuntimePool {
+
+    private final IStrategoRuntimeService runtimeService;
+    private final TestTracer tracer;
+
+    private final ConcurrentMap<RuntimeKey, BlockingQueue<HybridInterpreter>> idle = Maps.newConcurrentMap();
+    private volatile int maxIdle = 0;
+
+    @Inject public StrategoRuntimePool(IStrategoRuntimeService runtimeService, TestTracer tracer) {
+        this.runtimeService = runtimeService;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Set the maximum number of idle runtimes that are kept for each language component.
+     *
+     * Clears the pool.
+     *
+     * @param maxIdle
+     *            the maximum number of idle runtimes per language component. 0 disables pooling.
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = Math.max(0, maxIdle);
+        idle.clear();
+    }
+
+    /**
+     * Borrow a runtime for the given language component.
+     *
+     * The runtime should be returned with {@link #release(ILanguageComponent, IContext, HybridInterpreter)}.
+     *
+     * @param component
+     *            the language component that contributes the Stratego runtime.
+     * @param context
+     *            the context to run strategies in.
+     * @return a runtime from the pool, or a new one if there are no idle runtimes.
+     */
+    public HybridInterpreter get(ILanguageComponent component, IContext context) throws MetaborgException {
+        final BlockingQueue<HybridInterpreter> runtimes = idle.get(new RuntimeKey(component, context));
+        final HybridInterpreter runtime = runtimes == null ? null : runtimes.poll();
+        if(runtime == null) {
+            final long start = tracer.begin();
+            final HybridInterpreter newRuntime = runtimeService.runtime(component, context, false);
+            tracer.end(TestTracer.RUNTIME, null, null, component.id().toString(), start);
+            return newRuntime;
+        }
+        runtime.getContext().setContextObject(context);
+        runtime.getCompiledContext().setContextObject(context);
+        return runtime;
+    }
+
+    /**
+     * Return a runtime that was obtained through {@link #get(ILanguageComponent, IContext)}.
+     *
+     * The runtime should no longer be used afterwards.
+     */
+    public void release(ILanguageComponent component, IContext context, HybridInterpreter runtime) {
+        final int max = maxIdle;
+        // a runtime that was interrupted, for example by the test watchdog, may be in any state
+        if(max == 0 || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        runtime.setCurrent(null);
+        runtime.getContext().setContextObject(null);
+        runtime.getCompiledContext().setContextObject(null);
+        // dynamic rules are kept in the tables of the SSL library
+        clearTables(runtime.getContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME));
+        clearTables(runtime.getCompiledContext().getOperatorRegistry(SSLLibrary.REGISTRY_NAME));
+
+        final RuntimeKey key = new RuntimeKey(component, context);
+        BlockingQueue<HybridInterpreter> runtimes = idle.get(key);
+        if(runtimes == null) {
+            final BlockingQueue<HybridInterpreter> newRuntimes = new ArrayBlockingQueue<>(max);
+            runtimes = idle.putIfAbsent(key, newRuntimes);
+            if(runtimes == null) {
+                runtimes = newRuntimes;
+            }
+        }
+        // if the pool is full, the runtime is simply dropped
+        runtimes.offer(runtime);
+    }
+
+    private static void clearTables(@Nullable IOperatorRegistry registry) {
+        if(registry instanceof SSLLibrary) {
+            final SSLLibrary library = (SSLLibrary) registry;
+            library.getDynamicRuleTable().clear();
+            library.getTableTable().clear();
+        }
+    }
+
+
+    private static class RuntimeKey {
+        private final ILanguageComponent component;
+        private final FileObject location;
+
+        public RuntimeKey(ILanguageComponent component, IContext context) {
+            this.component = component;
+            this.location = context.location();
+        }
+
+        @Override public boolean equals(Object obj) {
+            if(!(obj instanceof RuntimeKey)) {
+                return false;
+            }
+            final RuntimeKey other = (RuntimeKey) obj;
+            return component.equals(other.component) && Objects.equal(location, other.location);
+        }
+
+        @Override public int hashCode() {
+            return Objects.hashCode(component, location);
+        }
+    }
+}
@@ -16,7 +16,6 @@ import org.metaborg.mbt.core.model.TestPhase;
 import org.metaborg.mbt.core.model.expectations.MessageUtil;
 import org.metaborg.mbt.core.model.expectations.RunStrategoExpectation;
 import org.metaborg.mbt.core.run.ITestExpectationInput;
-import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
 import org.metaborg.spoofax.core.stratego.StrategoRuntimeFacet;
 import org.metaborg.spoofax.core.terms.ITermFactoryService;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
@@ -28,11 +27,13 @@ import org.metaborg.spt.core.run.ISpoofaxFragmentResult;
 import org.metaborg.spt.core.run.ISpoofaxTestExpectationOutput;
 import org.metaborg.spt.core.run.SpoofaxFragmentResult;
 import org.metaborg.spt.core.run.SpoofaxTestExpectationOutput;
+import org.metaborg.spt.core.run.StrategoRuntimePool;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
 import org.spoofax.interpreter.core.InterpreterException;
 import org.spoofax.interpreter.core.UndefinedStrategyException;
 import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
 import org.strategoxt.HybridInterpreter;
 import org.strategoxt.lang.TermEqualityUtil;
 
@@ -43,15 +44,15 @@ public class RunStrategoExpectationEvaluator implements ISpoofaxExpectationEvalu
 
     private static final ILogger logger = LoggerUtils.logger(RunStrategoExpectationEvaluator.class);
 
-    private final IStrategoRuntimeService runtimeService;
+    private final StrategoRuntimePool runtimePool;
     private final ISpoofaxTracingService traceService;
     private final ITermFactoryService termFactoryService;
 
     private final FragmentUtil fragmentUtil;
 
-    @Inject public RunStrategoExpectationEvaluator(IStrategoRuntimeService runtimeService,
+    @Inject public RunStrategoExpectationEvaluator(StrategoRuntimePool runtimePool,
         ISpoofaxTracingService traceService, ITermFactoryService termFactoryService, FragmentUtil fragmentUtil) {
-        this.runtimeService = runtimeService;
+        this.runtimePool = runtimePool;
         this.traceService = traceService;
         this.termFactoryService = termFactoryService;
 
@@ -101,22 +102,6 @@ public class RunStrategoExpectationEvaluator implements ISpoofaxExpectationEvalu
             return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
         }
 
-        // Create the runtime for stratego
-        HybridInterpreter runtime = null;
-        FacetContribution<StrategoRuntimeFacet> facetContrib =
-            input.getLanguageUnderTest().facetContribution(StrategoRuntimeFacet.class);
-        if(facetContrib == null) {
-            messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                "Unable to load the StrategoRuntimeFacet for the language under test.", null));
-        } else {
-            try {
-                runtime = runtimeService.runtime(facetContrib.contributor, analysisResult.context(), false);
-            } catch(MetaborgException e) {
-                messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                    "Unable to load required files for the Stratego runtime.", e));
-            }
-        }
-
         /*
          * Obtain the AST nodes to try to run on.
          * 
@@ -150,67 +135,105 @@ public class RunStrategoExpectationEvaluator implements ISpoofaxExpectationEvalu
         }
         terms = Lists.reverse(terms);
 
-        // before we try to run anything, make sure we have a runtime and something to execute on
-        if(runtime == null || terms.isEmpty()) {
+        // before we try to run anything, make sure we have something to execute on
+        if(terms.isEmpty()) {
+            return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
+        }
+
+        // Create the runtime for stratego
+        HybridInterpreter runtime = null;
+        FacetContribution<StrategoRuntimeFacet> facetContrib =
+            input.getLanguageUnderTest().facetContribution(StrategoRuntimeFacet.class);
+        if(facetContrib == null) {
+            messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                "Unable to load the StrategoRuntimeFacet for the language under test.", null));
+        } else {
+            try {
+                runtime = runtimePool.get(facetContrib.contributor, analysisResult.context());
+            } catch(MetaborgException e) {
+                messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                    "Unable to load required files for the Stratego runtime.", e));
+            }
+        }
+
+        if(runtime == null) {
             return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
         }
 
         // run the strategy until we are done
         boolean success = false;
         IMessage lastMessage = null;
-        for(IStrategoTerm term : terms) {
-            // logger.debug("About to try to run the strategy {} on {}", expectation.strategy(), term);
-            // reset the last message
-            lastMessage = null;
-            runtime.setCurrent(term);
-            try {
-                // if the strategy failed, try the next input term
-                if(!runtime.invoke(strategy)) {
+        boolean outputAnalyzed = false;
+        ISpoofaxAnalyzeUnit analyzedFragment = null;
+        ITermFactory outputTermFactory = null;
+        try {
+            for(IStrategoTerm term : terms) {
+                // logger.debug("About to try to run the strategy {} on {}", expectation.strategy(), term);
+                // reset the last message
+                lastMessage = null;
+                if(input.getCancellationToken().isCancelled()) {
                     lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                        String.format("The given strategy %1$s failed during execution.", expectation.strategy()),
-                        null);
-                    continue;
+                        "The test run was cancelled before the strategy was run on all selected terms.", null);
+                    break;
                 }
-                // the strategy was successful
-                if(expectation.outputFragment() == null) {
-                    // a successful invocation is all we need
-                    success = true;
-                } else {
-                    // it's a RunTo(strategyName, ToPart(languageName, openMarker, fragment, closeMarker))
-                    // we need to analyze the fragment, at least until we support running on raw parsed terms
-                    ISpoofaxAnalyzeUnit analyzedFragment = fragmentUtil.analyzeFragment(expectation.outputFragment(),
-                        expectation.outputLanguage(), messages, test, input.getFragmentParserConfig());
-                    // compare the ASTs
-                    if(analyzedFragment != null
-                        && TermEqualityUtil.equalsIgnoreAnnos(analyzedFragment.ast(), runtime.current(),
-                            termFactoryService.get(
-                                fragmentUtil.getLanguage(expectation.outputLanguage(), messages, test).activeImpl(),
-                                test.getProject(), false))) {
-                        success = true;
-                    } else {
+                runtime.setCurrent(term);
+                try {
+                    // if the strategy failed, try the next input term
+                    if(!runtime.invoke(strategy)) {
                         lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                            String.format(
-                                "The result of running %1$s did not match the expected result.\nExpected: %2$s\nGot: %3$s",
-                                strategy, analyzedFragment == null ? "null" : analyzedFragment.ast(),
-                                runtime.current()),
+                            String.format("The given strategy %1$s failed during execution.", expectation.strategy()),
                             null);
+                        continue;
                     }
-                    fragmentResults.add(new SpoofaxFragmentResult(expectation.outputFragment(),
-                        analyzedFragment.input(), analyzedFragment, null));
-                }
-                if(success) {
+                    // the strategy was successful
+                    if(expectation.outputFragment() == null) {
+                        // a successful invocation is all we need
+                        success = true;
+                    } else {
+                        // it's a RunTo(strategyName, ToPart(languageName, openMarker, fragment, closeMarker))
+                        // we need to analyze the fragment, at least until we support running on raw parsed terms
+                        // the fragment is the same for each term we try, so we only analyze it once
+                        if(!outputAnalyzed) {
+                            outputAnalyzed = true;
+                            analyzedFragment = fragmentUtil.analyzeFragment(expectation.outputFragment(),
+                                expectation.outputLanguage(), messages, test, input.getFragmentParserConfig());
+                            if(analyzedFragment != null) {
+                                outputTermFactory = termFactoryService.get(analyzedFragment.input().input().langImpl(),
+                                    test.getProject(), false);
+                                fragmentResults.add(new SpoofaxFragmentResult(expectation.outputFragment(),
+                                    analyzedFragment.input(), analyzedFragment, null));
+                            }
+                        }
+                        // compare the ASTs
+                        if(analyzedFragment != null
+                            && TermEqualityUtil.equalsIgnoreAnnos(analyzedFragment.ast(), runtime.current(),
+                                outputTermFactory)) {
+                            success = true;
+                        } else {
+                            lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                                String.format(
+                                    "The result of running %1$s did not match the expected result.\nExpected: %2$s\nGot: %3$s",
+                                    strategy, analyzedFragment == null ? "null" : analyzedFragment.ast(),
+                                    runtime.current()),
+                                null);
+                        }
+                    }
+                    if(success) {
+                        break;
+                    }
+                } catch(UndefinedStrategyException e) {
+                    lastMessage = MessageFactory.newAnalysisError(test.getResource(), expectation.strategyRegion(),
+                        "No such strategy found: " + strategy, e);
+                    // this exception does not depend on the input so we can stop trying
                     break;
+                } catch(InterpreterException e) {
+                    // who knows what caused this, but we will just keep trying on the other terms
+                    lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                        "Encountered an error while executing the given strategy.", e);
                 }
-            } catch(UndefinedStrategyException e) {
-                lastMessage = MessageFactory.newAnalysisError(test.getResource(), expectation.strategyRegion(),
-                    "No such strategy found: " + strategy, e);
-                // this exception does not depend on the input so we can stop trying
-                break;
-            } catch(InterpreterException e) {
-                // who knows what caused this, but we will just keep trying on the other terms
-                lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                    "Encountered an error while executing the given strategy.", e);
             }
+        } finally {
+            runtimePool.release(facetContrib.contributor, analysisResult.context(), runtime);
         }
         if(lastMessage != null) {
             messages.add(lastMessage);
@@ -15,7 +15,6 @@ import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.TestPhase;
 import org.metaborg.mbt.core.model.expectations.MessageUtil;
 import org.metaborg.mbt.core.run.ITestExpectationInput;
-import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
 import org.metaborg.spoofax.core.stratego.StrategoRuntimeFacet;
 import org.metaborg.spoofax.core.terms.ITermFactoryService;
 import org.metaborg.spoofax.core.tracing.ISpoofaxTracingService;
@@ -26,6 +25,7 @@ import org.metaborg.spt.core.run.ISpoofaxExpectationEvaluator;
 import org.metaborg.spt.core.run.ISpoofaxFragmentResult;
 import org.metaborg.spt.core.run.ISpoofaxTestExpectationOutput;
 import org.metaborg.spt.core.run.SpoofaxTestExpectationOutput;
+import org.metaborg.spt.core.run.StrategoRuntimePool;
 import org.metaborg.util.iterators.Iterables2;
 import org.metaborg.util.log.ILogger;
 import org.metaborg.util.log.LoggerUtils;
@@ -43,13 +43,13 @@ public class RunStrategoToAtermExpectationEvaluator
 
     private static final ILogger logger = LoggerUtils.logger(RunStrategoToAtermExpectationEvaluator.class);
 
-    private final IStrategoRuntimeService runtimeService;
+    private final StrategoRuntimePool runtimePool;
     private final ISpoofaxTracingService traceService;
     private final ITermFactoryService termFactoryService;
 
-    @Inject public RunStrategoToAtermExpectationEvaluator(IStrategoRuntimeService runtimeService,
+    @Inject public RunStrategoToAtermExpectationEvaluator(StrategoRuntimePool runtimePool,
         ISpoofaxTracingService traceService, ITermFactoryService termFactoryService) {
-        this.runtimeService = runtimeService;
+        this.runtimePool = runtimePool;
         this.traceService = traceService;
         this.termFactoryService = termFactoryService;
     }
@@ -98,27 +98,6 @@ public class RunStrategoToAtermExpectationEvaluator
             return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
         }
 
-        // Create the runtime for stratego
-        HybridInterpreter runtime = null;
-        FacetContribution<StrategoRuntimeFacet> facetContrib =
-            input.getLanguageUnderTest().facetContribution(StrategoRuntimeFacet.class);
-        if(facetContrib == null) {
-            logger.debug("Unable to load the StrategoRuntimeFacet for the language under test.");
-            messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                "Unable to load the StrategoRuntimeFacet for the language under test.", null));
-        } else {
-            try {
-                runtime = runtimeService.runtime(facetContrib.contributor, analysisResult.context(), false);
-                if(runtime == null) {
-                    logger.debug("Unable to create a runtime! This should NOT happen, it isn't Nullable.");
-                }
-            } catch(MetaborgException e) {
-                logger.debug("Unable to load required files for the Stratego runtime.");
-                messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                    "Unable to load required files for the Stratego runtime.", e));
-            }
-        }
-
         /*
          * Obtain the AST nodes to try to run on.
          * 
@@ -157,52 +136,87 @@ public class RunStrategoToAtermExpectationEvaluator
         }
         terms = Lists.reverse(terms);
 
-        // before we try to run anything, make sure we have a runtime and something to execute on
-        if(runtime == null || terms.isEmpty()) {
-            logger.debug("Returning early, as there is either no runtime or nothing to run on.");
+        // before we try to run anything, make sure we have something to execute on
+        if(terms.isEmpty()) {
+            logger.debug("Returning early, as there is nothing to run on.");
+            return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
+        }
+
+        // Create the runtime for stratego
+        HybridInterpreter runtime = null;
+        FacetContribution<StrategoRuntimeFacet> facetContrib =
+            input.getLanguageUnderTest().facetContribution(StrategoRuntimeFacet.class);
+        if(facetContrib == null) {
+            logger.debug("Unable to load the StrategoRuntimeFacet for the language under test.");
+            messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                "Unable to load the StrategoRuntimeFacet for the language under test.", null));
+        } else {
+            try {
+                runtime = runtimePool.get(facetContrib.contributor, analysisResult.context());
+                if(runtime == null) {
+                    logger.debug("Unable to create a runtime! This should NOT happen, it isn't Nullable.");
+                }
+            } catch(MetaborgException e) {
+                logger.debug("Unable to load required files for the Stratego runtime.");
+                messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                    "Unable to load required files for the Stratego runtime.", e));
+            }
+        }
+
+        if(runtime == null) {
+            logger.debug("Returning early, as there is no runtime.");
             return new SpoofaxTestExpectationOutput(false, messages, fragmentResults);
         }
 
         // run the strategy until we are done
         boolean success = false;
         IMessage lastMessage = null;
-        for(IStrategoTerm term : terms) {
-            // reset the last message
-            lastMessage = null;
-            runtime.setCurrent(term);
-            try {
-                // if the strategy failed, try the next input term
-                if(!runtime.invoke(strategy)) {
-                    lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                        String.format("The given strategy %1$s failed during execution.", expectation.strategy()),
-                        null);
-                    continue;
-                }
-                // the strategy was successfull
-                // compare the ASTs
-                if(TermEqualityUtil.equalsIgnoreAnnos(expectation.expectedResult(), runtime.current(),
-                    termFactoryService.get(input.getLanguageUnderTest(), test.getProject(), false))) {
-                    success = true;
-                } else {
+        try {
+            for(IStrategoTerm term : terms) {
+                // reset the last message
+                lastMessage = null;
+                if(input.getCancellationToken().isCancelled()) {
                     lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                        String.format(
-                            "The result of running %1$s did not match the expected result.\nExpected: %2$s\nGot: %3$s",
-                            strategy, expectation.expectedResult(), runtime.current()),
-                        null);
+                        "The test run was cancelled before the strategy was run on all selected terms.", null);
+                    break;
                 }
-                if(success) {
+                runtime.setCurrent(term);
+                try {
+                    // if the strategy failed, try the next input term
+                    if(!runtime.invoke(strategy)) {
+                        lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                            String.format("The given strategy %1$s failed during execution.", expectation.strategy()),
+                            null);
+                        continue;
+                    }
+                    // the strategy was successfull
+                    // compare the ASTs
+                    if(TermEqualityUtil.equalsIgnoreAnnos(expectation.expectedResult(), runtime.current(),
+                        termFactoryService.get(input.getLanguageUnderTest(), test.getProject(), false))) {
+                        success = true;
+                    } else {
+                        lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                            String.format(
+                                "The result of running %1$s did not match the expected result.\nExpected: %2$s\nGot: %3$s",
+                                strategy, expectation.expectedResult(), runtime.current()),
+                            null);
+                    }
+                    if(success) {
+                        break;
+                    }
+                } catch(UndefinedStrategyException e) {
+                    lastMessage = MessageFactory.newAnalysisError(test.getResource(), expectation.strategyRegion(),
+                        "No such strategy found: " + strategy, e);
+                    // this exception does not depend on the input so we can stop trying
                     break;
+                } catch(InterpreterException e) {
+                    // who knows what caused this, but we will just keep trying on the other terms
+                    lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
+                        "Encountered an error while executing the given strategy.", e);
                 }
-            } catch(UndefinedStrategyException e) {
-                lastMessage = MessageFactory.newAnalysisError(test.getResource(), expectation.strategyRegion(),
-                    "No such strategy found: " + strategy, e);
-                // this exception does not depend on the input so we can stop trying
-                break;
-            } catch(InterpreterException e) {
-                // who knows what caused this, but we will just keep trying on the other terms
-                lastMessage = MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
-                    "Encountered an error while executing the given strategy.", e);
             }
+        } finally {
+            runtimePool.release(facetContrib.contributor, analysisResult.context(), runtime);
         }
         if(lastMessage != null) {
             messages.add(lastMessage);
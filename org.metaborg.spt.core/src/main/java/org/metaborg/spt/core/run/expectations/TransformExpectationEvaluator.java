@@ -8,8 +8,6 @@ import javax.annotation.Nullable;
 import org.metaborg.core.action.ITransformGoal;
 import org.metaborg.core.context.ContextException;
 import org.metaborg.core.context.IContext;
-import org.metaborg.core.context.IContextService;
-import org.metaborg.core.context.ITemporaryContext;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.core.messages.MessageFactory;
@@ -21,6 +19,7 @@ import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.TestPhase;
 import org.metaborg.mbt.core.model.expectations.MessageUtil;
 import org.metaborg.mbt.core.model.expectations.TransformExpectation;
+import org.metaborg.mbt.core.run.ContextPool;
 import org.metaborg.mbt.core.run.IFragmentParserConfig;
 import org.metaborg.mbt.core.run.ITestExpectationInput;
 import org.metaborg.spoofax.core.action.ActionFacet;
@@ -54,15 +53,15 @@ public class TransformExpectationEvaluator implements ISpoofaxExpectationEvaluat
     private static final ILogger logger = LoggerUtils.logger(TransformExpectationEvaluator.class);
 
     private final ISpoofaxTransformService transformService;
-    private final IContextService contextService;
+    private final ContextPool contextPool;
     private final ITermFactoryService termFactoryService;
 
     private final FragmentUtil fragmentUtil;
 
     @Inject public TransformExpectationEvaluator(ISpoofaxTransformService transformService,
-        IContextService contextService, ITermFactoryService termFactoryService, FragmentUtil fragmentUtil) {
+        ContextPool contextPool, ITermFactoryService termFactoryService, FragmentUtil fragmentUtil) {
         this.transformService = transformService;
-        this.contextService = contextService;
+        this.contextPool = contextPool;
         this.termFactoryService = termFactoryService;
 
         this.fragmentUtil = fragmentUtil;
@@ -86,12 +85,12 @@ public class TransformExpectationEvaluator implements ISpoofaxExpectationEvaluat
         final List<ISpoofaxFragmentResult> fragmentResults = Lists.newLinkedList();
 
         // obtain a context
-        ITemporaryContext tempCtx = null;
+        IContext tempCtx = null;
         IContext ctx = input.getFragmentResult().getContext();
         if(ctx == null) {
-            // we have to create a new context
+            // we have to get a context from the pool
             try {
-                tempCtx = contextService.getTemporary(test.getResource(), test.getProject(), lut);
+                tempCtx = contextPool.get(test.getResource(), test.getProject(), lut);
                 ctx = tempCtx;
             } catch(ContextException e) {
                 messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
@@ -115,7 +114,7 @@ public class TransformExpectationEvaluator implements ISpoofaxExpectationEvaluat
                     input.getLanguageUnderTest().id()),
                 null));
             if(tempCtx != null) {
-                tempCtx.close();
+                contextPool.release(test.getProject(), lut, tempCtx);
             }
             return new SpoofaxTestExpectationOutput(success, messages, fragmentResults);
         }
@@ -153,7 +152,7 @@ public class TransformExpectationEvaluator implements ISpoofaxExpectationEvaluat
         }
 
         if(tempCtx != null) {
-            tempCtx.close();
+            contextPool.release(test.getProject(), lut, tempCtx);
         }
         return new SpoofaxTestExpectationOutput(success, messages, fragmentResults);
     }
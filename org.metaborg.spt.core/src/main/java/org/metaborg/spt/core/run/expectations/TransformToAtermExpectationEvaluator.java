@@ -6,8 +6,6 @@ import java.util.List;
 import org.metaborg.core.action.ITransformGoal;
 import org.metaborg.core.context.ContextException;
 import org.metaborg.core.context.IContext;
-import org.metaborg.core.context.IContextService;
-import org.metaborg.core.context.ITemporaryContext;
 import org.metaborg.core.language.ILanguageImpl;
 import org.metaborg.core.messages.IMessage;
 import org.metaborg.core.messages.MessageFactory;
@@ -15,6 +13,7 @@ import org.metaborg.core.transform.TransformException;
 import org.metaborg.mbt.core.model.IFragment;
 import org.metaborg.mbt.core.model.ITestCase;
 import org.metaborg.mbt.core.model.TestPhase;
+import org.metaborg.mbt.core.run.ContextPool;
 import org.metaborg.mbt.core.run.ITestExpectationInput;
 import org.metaborg.spoofax.core.action.ActionFacet;
 import org.metaborg.spoofax.core.terms.ITermFactoryService;
@@ -46,13 +45,13 @@ public class TransformToAtermExpectationEvaluator implements ISpoofaxExpectation
     private static final ILogger logger = LoggerUtils.logger(TransformToAtermExpectationEvaluator.class);
 
     private final ISpoofaxTransformService transformService;
-    private final IContextService contextService;
+    private final ContextPool contextPool;
     private final ITermFactoryService termFactoryService;
 
     @Inject public TransformToAtermExpectationEvaluator(ISpoofaxTransformService transformService,
-        IContextService contextService, ITermFactoryService termFactoryService) {
+        ContextPool contextPool, ITermFactoryService termFactoryService) {
         this.transformService = transformService;
-        this.contextService = contextService;
+        this.contextPool = contextPool;
         this.termFactoryService = termFactoryService;
     }
 
@@ -74,12 +73,12 @@ public class TransformToAtermExpectationEvaluator implements ISpoofaxExpectation
         final Iterable<ISpoofaxFragmentResult> fragmentResults = Iterables2.empty();
 
         // obtain a context
-        ITemporaryContext tempCtx = null;
+        IContext tempCtx = null;
         IContext ctx = input.getFragmentResult().getContext();
         if(ctx == null) {
-            // we have to create a new context
+            // we have to get a context from the pool
             try {
-                tempCtx = contextService.getTemporary(test.getResource(), test.getProject(), lut);
+                tempCtx = contextPool.get(test.getResource(), test.getProject(), lut);
                 ctx = tempCtx;
             } catch(ContextException e) {
                 messages.add(MessageFactory.newAnalysisError(test.getResource(), test.getDescriptionRegion(),
@@ -103,7 +102,7 @@ public class TransformToAtermExpectationEvaluator implements ISpoofaxExpectation
                     input.getLanguageUnderTest().id()),
                 null));
             if(tempCtx != null) {
-                tempCtx.close();
+                contextPool.release(test.getProject(), lut, tempCtx);
             }
             return new SpoofaxTestExpectationOutput(success, messages, fragmentResults);
         }
@@ -139,7 +138,7 @@ public class TransformToAtermExpectationEvaluator implements ISpoofaxExpectation
         }
 
         if(tempCtx != null) {
-            tempCtx.close();
+            contextPool.release(test.getProject(), lut, tempCtx);
         }
         return new SpoofaxTestExpectationOutput(success, messages, fragmentResults);
     }
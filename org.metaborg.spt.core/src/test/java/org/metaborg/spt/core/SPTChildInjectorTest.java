@@ -0,0 +1,104 @@
+package org.metaborg.spt.core;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spt.core.run.SpoofaxTestCaseRunner;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Injector;
+
+/**
+ * Stress tests the creation of the child injector and services that the editor uses, from many threads at the same
+ * time.
+ */
+public class SPTChildInjectorTest {
+    private static final int threads = 16;
+    private static final int callsPerThread = 1000;
+
+
+    @Test public void testConcurrentCallsGetSameInjector() throws Exception {
+        try(final Spoofax spoofax = new Spoofax(new TestModule())) {
+            final List<Injector> injectors = getConcurrently(new Callable<Injector>() {
+                @Override public Injector call() {
+                    return spoofax.injector.getInstance(SPTChildInjector.class).get();
+                }
+            });
+            final Injector first = injectors.get(0);
+            assertSame(spoofax.injector, first.getParent());
+            for(Injector injector : injectors) {
+                assertSame(first, injector);
+            }
+            assertSame(first.getInstance(SpoofaxTestCaseRunner.class),
+                spoofax.injector.getInstance(SPTChildInjector.class).get().getInstance(SpoofaxTestCaseRunner.class));
+        }
+    }
+
+    @Test public void testConcurrentCallsGetSameServices() throws Exception {
+        try(final Spoofax spoofax = new Spoofax(new TestModule())) {
+            final List<SPTServices> services = getConcurrently(new Callable<SPTServices>() {
+                @Override public SPTServices call() {
+                    return SPTServices.of(spoofax.injector);
+                }
+            });
+            final SPTServices first = services.get(0);
+            for(SPTServices service : services) {
+                assertSame(first, service);
+            }
+            final Injector injector = spoofax.injector.getInstance(SPTChildInjector.class).get();
+            assertSame(injector.getInstance(SpoofaxTestCaseRunner.class), first.runner);
+        }
+    }
+
+    @Test public void testSpoofaxInstancesGetOwnInjector() throws Exception {
+        try(final Spoofax spoofax1 = new Spoofax(new TestModule());
+            final Spoofax spoofax2 = new Spoofax(new TestModule())) {
+            final Injector injector1 = spoofax1.injector.getInstance(SPTChildInjector.class).get();
+            final Injector injector2 = spoofax2.injector.getInstance(SPTChildInjector.class).get();
+            assertNotSame(injector1, injector2);
+            assertSame(spoofax1.injector, injector1.getParent());
+            assertSame(spoofax2.injector, injector2.getParent());
+        }
+    }
+
+
+    /**
+     * Call the given function from many threads, which all start at the same time.
+     */
+    private static <T> List<T> getConcurrently(final Callable<T> get) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<List<T>>> futures = Lists.newArrayList();
+            for(int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<List<T>>() {
+                    @Override public List<T> call() throws Exception {
+                        start.await();
+                        final List<T> results = Lists.newArrayList();
+                        for(int j = 0; j < callsPerThread; j++) {
+                            results.add(get.call());
+                        }
+                        return results;
+                    }
+                }));
+            }
+            start.countDown();
+            final List<T> results = Lists.newArrayList();
+            for(Future<List<T>> future : futures) {
+                results.addAll(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
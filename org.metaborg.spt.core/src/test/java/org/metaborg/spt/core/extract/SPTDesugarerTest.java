@@ -0,0 +1,205 @@
+package org.metaborg.spt.core.extract;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.apache.commons.vfs2.FileObject;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.metaborg.core.MetaborgException;
+import org.metaborg.core.language.FacetContribution;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageDiscoveryService;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.LanguageUtils;
+import org.metaborg.core.resource.IResourceService;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spoofax.core.stratego.IStrategoRuntimeService;
+import org.metaborg.spoofax.core.stratego.StrategoRuntimeFacet;
+import org.metaborg.spoofax.core.syntax.ISpoofaxSyntaxService;
+import org.metaborg.spoofax.core.terms.ITermFactoryService;
+import org.metaborg.spoofax.core.unit.ISpoofaxInputUnitService;
+import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
+import org.metaborg.spt.core.SPTModule;
+import org.metaborg.spt.core.TestModule;
+import org.spoofax.interpreter.core.InterpreterException;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.strategoxt.HybridInterpreter;
+
+/**
+ * Checks that {@link SPTDesugarer} desugars test suites the same way as <code>desugar-before</code> in the SPT
+ * language.
+ *
+ * Requires a build of the SPT language. Its location is taken from the <code>spt.language</code> system property, and
+ * defaults to the SPT language project next to this project. The tests are skipped if the language was not built.
+ */
+public class SPTDesugarerTest {
+    private static final String strategy = "desugar-before";
+
+    private static Spoofax spoofax;
+    private static ILanguageImpl spt;
+    private static ILanguageComponent strategoComponent;
+    private static FileObject location;
+
+
+    @BeforeClass public static void loadLanguage() throws MetaborgException {
+        final File sptLocation =
+            new File(System.getProperty("spt.language", "../org.metaborg.meta.lang.spt")).getAbsoluteFile();
+        Assume.assumeTrue("The SPT language was not built",
+            new File(sptLocation, "target/metaborg/stratego.ctree").exists());
+
+        spoofax = new Spoofax(new TestModule(), new SPTModule());
+        final IResourceService resourceService = spoofax.injector.getInstance(IResourceService.class);
+        final ILanguageDiscoveryService discoveryService =
+            spoofax.injector.getInstance(ILanguageDiscoveryService.class);
+        location = resourceService.resolve(sptLocation);
+        final Iterable<ILanguageComponent> components =
+            discoveryService.discover(discoveryService.request(location));
+        spt = LanguageUtils.toImpls(components).iterator().next();
+        final FacetContribution<StrategoRuntimeFacet> facetContrib =
+            spt.facetContribution(StrategoRuntimeFacet.class);
+        strategoComponent = facetContrib.contributor;
+    }
+
+    @AfterClass public static void close() {
+        if(spoofax != null) {
+            spoofax.close();
+        }
+    }
+
+
+    @Test public void testDeclarations() throws Exception {
+        // @formatter:off
+        assertSameDesugaring(
+            "module desugar\n" +
+            "language Foo\n" +
+            "start symbol Start\n" +
+            "\n" +
+            "test two brackets [[a [[b]] c]]\n" +
+            "parse succeeds\n" +
+            "\n" +
+            "test three brackets [[[a [[[b]]] c]]]\n" +
+            "parse fails\n" +
+            "\n" +
+            "test four brackets [[[[a]]]]\n" +
+            "has origin locations");
+        // @formatter:on
+    }
+
+    @Test public void testMessageExpectations() throws Exception {
+        // @formatter:off
+        assertSameDesugaring(
+            "module desugar\n" +
+            "language Foo\n" +
+            "\n" +
+            "test messages [[a]]\n" +
+            "1 error\n" +
+            "2 errors\n" +
+            "1 warning\n" +
+            "3 warnings\n" +
+            "1 note\n" +
+            "0 notes");
+        // @formatter:on
+    }
+
+    @Test public void testResolveExpectations() throws Exception {
+        // @formatter:off
+        assertSameDesugaring(
+            "module desugar\n" +
+            "language Foo\n" +
+            "\n" +
+            "test resolve [[[[a]] [[b]]]]\n" +
+            "resolve #1\n" +
+            "resolve #2 to #1");
+        // @formatter:on
+    }
+
+    @Test public void testToParts() throws Exception {
+        // @formatter:off
+        assertSameDesugaring(
+            "module desugar\n" +
+            "language Foo\n" +
+            "\n" +
+            "test to parts [[a]]\n" +
+            "parse to Foo [[b [[c]] ]]\n" +
+            "parse to Bar [[[d]]]\n" +
+            "run strat to Foo [[[[e]]]]\n" +
+            "transform \"Menu -> Action\" to Foo [[f]]");
+        // @formatter:on
+    }
+
+    @Test public void testATerms() throws Exception {
+        // @formatter:off
+        assertSameDesugaring(
+            "module desugar\n" +
+            "language Foo\n" +
+            "\n" +
+            "test aterms [[a]]\n" +
+            "parse to Add(Int(\"1\"), [Var(\"x\"), 2], \"\\\"s\\\"\")\n" +
+            "run strat to Nil(){Anno(\"a\"), 3}\n" +
+            "transform \"Menu -> Action\" to [[], [Some(None())]]{Anno()}");
+        // @formatter:on
+    }
+
+    @Test public void testNonDecimalCount() throws Exception {
+        final ITermFactory factory = spoofax.injector.getInstance(ITermFactoryService.class).getGeneric();
+        assertBothFail(factory.makeAppl(factory.makeConstructor("Errors", 1), factory.makeString("many")));
+        assertBothFail(factory.makeAppl(factory.makeConstructor("Resolve", 1), factory.makeString("#1")));
+        assertBothFail(factory.makeAppl(factory.makeConstructor("ResolveTo", 2), factory.makeString("1"),
+            factory.makeString("x")));
+    }
+
+
+    private static void assertSameDesugaring(String suite) throws Exception {
+        final IStrategoTerm ast = parse(suite);
+        final IStrategoTerm expected = strategoDesugar(ast);
+        assertTrue("The Stratego desugaring failed", expected != null);
+        assertEquals(expected, javaDesugar(ast));
+    }
+
+    private static void assertBothFail(IStrategoTerm term) throws Exception {
+        assertTrue("The Stratego desugaring of " + term + " succeeded", strategoDesugar(term) == null);
+        try {
+            javaDesugar(term);
+            fail("The Java desugaring of " + term + " succeeded");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static IStrategoTerm parse(String text) throws Exception {
+        final ISpoofaxInputUnitService inputService = spoofax.injector.getInstance(ISpoofaxInputUnitService.class);
+        final ISpoofaxSyntaxService syntaxService = spoofax.injector.getInstance(ISpoofaxSyntaxService.class);
+        final FileObject resource = location.resolveFile("desugar.spt");
+        final ISpoofaxParseUnit p = syntaxService.parse(inputService.inputUnit(resource, text, spt, null));
+        assertTrue("Unable to parse the test suite: " + p.messages(), p.success());
+        assertFalse(p.ast() == null);
+        return p.ast();
+    }
+
+    private static IStrategoTerm javaDesugar(IStrategoTerm ast) {
+        return spoofax.injector.getInstance(SPTDesugarer.class).desugar(ast);
+    }
+
+    /**
+     * @return the desugared term, or null if the desugaring failed.
+     */
+    private static IStrategoTerm strategoDesugar(IStrategoTerm ast) throws MetaborgException {
+        final IStrategoRuntimeService runtimeService = spoofax.injector.getInstance(IStrategoRuntimeService.class);
+        final HybridInterpreter runtime = runtimeService.runtime(strategoComponent, location, false);
+        runtime.setCurrent(ast);
+        try {
+            return runtime.invoke(strategy) ? runtime.current() : null;
+        } catch(InterpreterException e) {
+            // a with clause that fails raises an exception
+            return null;
+        }
+    }
+}
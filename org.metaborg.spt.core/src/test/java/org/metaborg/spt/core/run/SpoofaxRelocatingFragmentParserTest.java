@@ -0,0 +1,163 @@
+package org.metaborg.spt.core.run;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.metaborg.core.source.ISourceRegion;
+import org.metaborg.core.source.SourceRegion;
+import org.metaborg.mbt.core.model.Fragment;
+import org.metaborg.mbt.core.model.IFragment.FragmentPiece;
+import org.metaborg.spt.core.run.SpoofaxRelocatingFragmentParser.OffsetMap;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.jsglr.client.imploder.ImploderAttachment;
+import org.spoofax.terms.TermFactory;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Checks the mapping between offsets in the parsed text of a fragment and in the test suite, and the relocation of
+ * parsed and cached ASTs with it.
+ */
+public class SpoofaxRelocatingFragmentParserTest {
+    private static final String filename = "test.spt";
+
+    // the parser only uses its services to parse
+    private final SpoofaxRelocatingFragmentParser parser = new SpoofaxRelocatingFragmentParser(null, null, null, null);
+    private final ITermFactory factory = new TermFactory();
+
+
+    @Test public void testSeparatedPieces() {
+        final OffsetMap offsets = new OffsetMap();
+        // the text between the pieces is replaced by a single space
+        assertEquals("ab cd", text(offsets, piece(10, "ab"), piece(20, "cd")));
+
+        assertEquals(10, offsets.toSuiteOffset(0));
+        assertEquals(11, offsets.toSuiteOffset(1));
+        // the space maps to the first character after the first piece
+        assertEquals(12, offsets.toSuiteOffset(2));
+        assertEquals(20, offsets.toSuiteOffset(3));
+        assertEquals(21, offsets.toSuiteOffset(4));
+        // the end of the text
+        assertEquals(22, offsets.toSuiteOffset(5));
+
+        assertEquals(0, offsets.toFragmentOffset(10));
+        assertEquals(1, offsets.toFragmentOffset(11));
+        assertEquals(2, offsets.toFragmentOffset(12));
+        assertEquals(3, offsets.toFragmentOffset(20));
+        assertEquals(4, offsets.toFragmentOffset(21));
+    }
+
+    @Test public void testAdjacentPieces() {
+        final OffsetMap offsets = new OffsetMap();
+        assertEquals("abcd", text(offsets, piece(10, "ab"), piece(12, "cd")));
+
+        for(int i = 0; i < 4; i++) {
+            assertEquals(10 + i, offsets.toSuiteOffset(i));
+            assertEquals(i, offsets.toFragmentOffset(10 + i));
+        }
+    }
+
+    @Test public void testEmptyPieces() {
+        final OffsetMap offsets = new OffsetMap();
+        // an empty first piece is replaced by the piece after it
+        assertEquals("ab  cd", text(offsets, piece(5, ""), piece(10, "ab"), piece(20, ""), piece(30, "cd")));
+
+        assertEquals(10, offsets.toSuiteOffset(0));
+        assertEquals(11, offsets.toSuiteOffset(1));
+        assertEquals(12, offsets.toSuiteOffset(2));
+        assertEquals(20, offsets.toSuiteOffset(3));
+        assertEquals(30, offsets.toSuiteOffset(4));
+        assertEquals(31, offsets.toSuiteOffset(5));
+
+        assertEquals(0, offsets.toFragmentOffset(10));
+        assertEquals(3, offsets.toFragmentOffset(20));
+        assertEquals(4, offsets.toFragmentOffset(30));
+        assertEquals(5, offsets.toFragmentOffset(31));
+    }
+
+    @Test public void testOffsetsOutsidePieces() {
+        final OffsetMap offsets = new OffsetMap();
+        text(offsets, piece(10, "ab"), piece(20, "cd"));
+
+        // offsets before the first piece are mapped relative to it
+        assertEquals(-1, offsets.toSuiteOffset(-1));
+        assertEquals(0, offsets.toFragmentOffset(10));
+        assertEquals(-2, offsets.toFragmentOffset(8));
+
+        // without pieces, offsets are not mapped
+        final OffsetMap empty = new OffsetMap();
+        assertEquals("", text(empty));
+        assertEquals(3, empty.toSuiteOffset(3));
+        assertEquals(3, empty.toFragmentOffset(3));
+    }
+
+    @Test public void testRelocate() {
+        final OffsetMap offsets = new OffsetMap();
+        text(offsets, piece(10, "ab"), piece(20, "cd"));
+        final IStrategoTerm ast = ast();
+
+        parser.relocate(ast, filename, offsets, Sets.<IStrategoTerm>newIdentityHashSet());
+
+        assertPosition(10, 21, ast);
+        assertPosition(20, 21, ast.getSubterm(0));
+        // empty nodes end right before they start
+        assertPosition(12, 11, ast.getSubterm(1));
+    }
+
+    @Test public void testCopyCachedAst() {
+        final OffsetMap first = new OffsetMap();
+        text(first, piece(10, "ab"), piece(20, "cd"));
+        final OffsetMap second = new OffsetMap();
+        // the same text, at another location in the test suite
+        text(second, piece(100, "ab"), piece(105, "cd"));
+        final IStrategoTerm ast = ast();
+        parser.relocate(ast, filename, first, Sets.<IStrategoTerm>newIdentityHashSet());
+
+        final IStrategoTerm copy = parser.copy(ast, factory, filename, first, second);
+
+        assertEquals(ast, copy);
+        assertPosition(100, 106, copy);
+        assertPosition(105, 106, copy.getSubterm(0));
+        assertPosition(102, 101, copy.getSubterm(1));
+        // the cached AST keeps the positions of the first fragment
+        assertPosition(10, 21, ast);
+        assertPosition(20, 21, ast.getSubterm(0));
+        assertPosition(12, 11, ast.getSubterm(1));
+    }
+
+
+    private String text(OffsetMap offsets, FragmentPiece... pieces) {
+        final ISourceRegion region = new SourceRegion(0, 0);
+        final Fragment fragment =
+            new Fragment(region, Collections.<ISourceRegion>emptyList(), Arrays.asList(pieces), null, null);
+        return parser.getFragmentText(fragment, offsets);
+    }
+
+    private static FragmentPiece piece(int offset, String text) {
+        return new FragmentPiece(offset, text);
+    }
+
+    /**
+     * An AST for the text "ab cd" as the parser creates it, Foo("cd", []), with the list empty at the space.
+     */
+    private IStrategoTerm ast() {
+        final IStrategoTerm string = position(factory.makeString("cd"), 3, 4);
+        final IStrategoTerm list = position(factory.makeList(), 2, 1);
+        return position(factory.makeAppl(factory.makeConstructor("Foo", 2), string, list), 0, 4);
+    }
+
+    private static IStrategoTerm position(IStrategoTerm term, int start, int end) {
+        term.putAttachment(ImploderAttachment.createCompactPositionAttachment(filename, 1, start + 1, start, end));
+        return term;
+    }
+
+    private static void assertPosition(int start, int end, IStrategoTerm term) {
+        final ImploderAttachment imploder = ImploderAttachment.get(term);
+        assertEquals(start, imploder.getLeftToken().getStartOffset());
+        assertEquals(end, imploder.getRightToken().getEndOffset());
+    }
+}